@@ -0,0 +1,251 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ConcurrentFaultSimulator {
+
+    private List<FaultSimulator.Fault> faults;
+    private int[] functions;
+    private int[] faninOffsets;
+    private int[] faninIndices;
+    private int[] gateOutputs;
+    private int[] levels;
+    private int[] fanoutOffsets;
+    private int[] fanoutIndices;
+    private int[] inputs;
+    private int[] outputs;
+    private int[] localFaults;
+    private int[] values;
+    private int[][] machines;
+    private int[] machineCounts;
+    private int[] scratch = new int[16];
+    private int[] cursors;
+    private int[][] events;
+    private int[] eventCounts;
+    private boolean[] queued;
+    private boolean[] seen;
+    private boolean initialized;
+
+    public ConcurrentFaultSimulator(Netlist netlist, List<FaultSimulator.Fault> faults) {
+
+        this.faults = faults;
+        functions = netlist.getFunctions();
+        faninOffsets = netlist.getFaninOffsets();
+        faninIndices = netlist.getFaninIndices();
+        gateOutputs = netlist.getGateOutputs();
+        levels = netlist.getLevels();
+        fanoutOffsets = netlist.getFanoutOffsets();
+        fanoutIndices = netlist.getFanoutIndices();
+        inputs = netlist.getInputs();
+        outputs = netlist.getOutputs();
+
+        int numberOfNets = netlist.getNumberOfNets();
+        localFaults = new int[2 * numberOfNets];
+        Arrays.fill(localFaults, -1);
+        for (int f = 0; f < faults.size(); f++) {
+            FaultSimulator.Fault fault = faults.get(f);
+            localFaults[2 * fault.getNet() + fault.getValue()] = f;
+        }
+        values = new int[numberOfNets];
+        machines = new int[numberOfNets][];
+        machineCounts = new int[numberOfNets];
+        seen = new boolean[faults.size()];
+
+        int maximumFanin = 1;
+        for (int g = 0; g < functions.length; g++) {
+            maximumFanin = Math.max(maximumFanin, faninOffsets[g + 1] - faninOffsets[g]);
+        }
+        cursors = new int[maximumFanin];
+
+        int[] levelOffsets = netlist.getLevelOffsets();
+        events = new int[netlist.getNumberOfLevels()][];
+        for (int l = 0; l < events.length; l++) {
+            events[l] = new int[levelOffsets[l + 1] - levelOffsets[l]];
+        }
+        eventCounts = new int[events.length];
+        queued = new boolean[functions.length];
+    }
+
+    public void apply(String inputVector) {
+
+        for (int i = 0; i < inputs.length; i++) {
+            int net = inputs[i];
+            int value = i < inputVector.length() ? Character.getNumericValue(inputVector.charAt(i)) & 1 : 0;
+            if (initialized && values[net] == value) {
+                continue;
+            }
+            values[net] = value;
+            int count = 0;
+            int fault = localFaults[2 * net + (value ^ 1)];
+            if (fault >= 0) {
+                scratch[count++] = fault;
+            }
+            store(net, count);
+            scheduleFanouts(net);
+        }
+        if (!initialized) {
+            for (int g = 0; g < functions.length; g++) {
+                schedule(g);
+            }
+            initialized = true;
+        }
+
+        for (int level = 0; level < events.length; level++) {
+            int[] bucket = events[level];
+            for (int e = 0; e < eventCounts[level]; e++) {
+                int g = bucket[e];
+                queued[g] = false;
+                if (evaluateGate(g)) {
+                    scheduleFanouts(gateOutputs[g]);
+                }
+            }
+            eventCounts[level] = 0;
+        }
+    }
+
+    public List<FaultSimulator.Fault> getDetectedFaults() {
+
+        List<FaultSimulator.Fault> detected = new ArrayList<>();
+        for (int i = 0; i < outputs.length; i++) {
+            int[] list = machines[outputs[i]];
+            for (int m = 0; m < machineCounts[outputs[i]]; m++) {
+                if (!seen[list[m]]) {
+                    seen[list[m]] = true;
+                    detected.add(faults.get(list[m]));
+                }
+            }
+        }
+        for (FaultSimulator.Fault fault : detected) {
+            seen[localFaults[2 * fault.getNet() + fault.getValue()]] = false;
+        }
+        Collections.sort(detected, (x, y) -> x.getNet() != y.getNet()
+            ? Integer.compare(x.getNet(), y.getNet()) : Integer.compare(x.getValue(), y.getValue()));
+        return detected;
+    }
+
+    public List<FaultSimulator.Fault> getFaultList() {
+        return faults;
+    }
+
+    private boolean evaluateGate(int g) {
+
+        int first = faninOffsets[g];
+        int last = faninOffsets[g + 1];
+        int output = gateOutputs[g];
+        int value = evaluate(g, -1);
+        int stuckAt0 = localFaults[2 * output];
+        int stuckAt1 = localFaults[2 * output + 1];
+
+        int count = 0;
+        for (int p = first; p < last; p++) {
+            cursors[p - first] = 0;
+        }
+        while (true) {
+            int fault = Integer.MAX_VALUE;
+            for (int p = first; p < last; p++) {
+                int in = faninIndices[p];
+                if (cursors[p - first] < machineCounts[in]) {
+                    fault = Math.min(fault, machines[in][cursors[p - first]]);
+                }
+            }
+            if (stuckAt0 >= 0) {
+                fault = Math.min(fault, stuckAt0);
+            }
+            if (stuckAt1 >= 0) {
+                fault = Math.min(fault, stuckAt1);
+            }
+            if (fault == Integer.MAX_VALUE) {
+                break;
+            }
+
+            int faulty;
+            if (fault == stuckAt0 || fault == stuckAt1) {
+                faulty = fault == stuckAt0 ? 0 : 1;
+                if (fault == stuckAt0) {
+                    stuckAt0 = -1;
+                } else {
+                    stuckAt1 = -1;
+                }
+            } else {
+                faulty = evaluate(g, fault);
+            }
+            for (int p = first; p < last; p++) {
+                int in = faninIndices[p];
+                if (cursors[p - first] < machineCounts[in] && machines[in][cursors[p - first]] == fault) {
+                    cursors[p - first]++;
+                }
+            }
+            if (faulty != value) {
+                if (count == scratch.length) {
+                    scratch = Arrays.copyOf(scratch, 2 * count);
+                }
+                scratch[count++] = fault;
+            }
+        }
+
+        boolean changed = values[output] != value || count != machineCounts[output];
+        for (int m = 0; m < count && !changed; m++) {
+            changed = machines[output][m] != scratch[m];
+        }
+        values[output] = value;
+        if (changed) {
+            store(output, count);
+        }
+        return changed;
+    }
+
+    private int evaluate(int g, int fault) {
+
+        int first = faninOffsets[g];
+        int last = faninOffsets[g + 1];
+        int and = 1;
+        int or = 0;
+        int xor = 0;
+        for (int p = first; p < last; p++) {
+            int in = faninIndices[p];
+            int value = values[in];
+            if (fault >= 0 && cursors[p - first] < machineCounts[in] && machines[in][cursors[p - first]] == fault) {
+                value ^= 1;
+            }
+            and &= value;
+            or |= value;
+            xor ^= value;
+        }
+        switch (functions[g]) {
+            case Netlist.INV:   return xor ^ 1;
+            case Netlist.BUF:   return xor;
+            case Netlist.AND:   return and;
+            case Netlist.OR:    return or;
+            case Netlist.NAND:  return and ^ 1;
+            case Netlist.NOR:   return or ^ 1;
+            case Netlist.XOR:   return xor;
+            case Netlist.XNOR:  return xor ^ 1;
+            default:            throw new IllegalArgumentException("Unsupported logic gate " + functions[g]);
+        }
+    }
+
+    private void store(int net, int count) {
+
+        if (machines[net] == null || machines[net].length < count) {
+            machines[net] = new int[Math.max(count, 4)];
+        }
+        System.arraycopy(scratch, 0, machines[net], 0, count);
+        machineCounts[net] = count;
+    }
+
+    private void scheduleFanouts(int net) {
+
+        for (int p = fanoutOffsets[net]; p < fanoutOffsets[net + 1]; p++) {
+            schedule(fanoutIndices[p]);
+        }
+    }
+
+    private void schedule(int g) {
+
+        if (!queued[g]) {
+            queued[g] = true;
+            events[levels[g]][eventCounts[levels[g]]++] = g;
+        }
+    }
+}
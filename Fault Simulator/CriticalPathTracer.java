@@ -0,0 +1,303 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Arrays;
+
+public class CriticalPathTracer {
+
+    private List<FaultSimulator.Fault> faults;
+    private int[] functions;
+    private int[] faninOffsets;
+    private int[] faninIndices;
+    private int[] gateOutputs;
+    private int[] levels;
+    private int[] inputs;
+    private int[] localFaults;
+    private boolean[] observed;
+    private int[] branchOffsets;
+    private int[] branchGates;
+    private byte[] states;
+    private boolean[] critical;
+    private int[] remaining;
+    private int[] touched;
+    private int touchedCount;
+    private int open;
+    private int openNets;
+    private long[] pending;
+    private int[][] events;
+    private int[] eventCounts;
+    private boolean[] queued;
+
+    public CriticalPathTracer(Netlist netlist, List<FaultSimulator.Fault> faults) {
+
+        this.faults = faults;
+        functions = netlist.getFunctions();
+        faninOffsets = netlist.getFaninOffsets();
+        faninIndices = netlist.getFaninIndices();
+        gateOutputs = netlist.getGateOutputs();
+        levels = netlist.getLevels();
+        inputs = netlist.getInputs();
+
+        int numberOfNets = netlist.getNumberOfNets();
+        localFaults = new int[2 * numberOfNets];
+        Arrays.fill(localFaults, -1);
+        for (int f = 0; f < faults.size(); f++) {
+            FaultSimulator.Fault fault = faults.get(f);
+            localFaults[2 * fault.getNet() + fault.getValue()] = f;
+        }
+        observed = new boolean[numberOfNets];
+        for (int output : netlist.getOutputs()) {
+            observed[output] = true;
+        }
+        boolean[] observable = observed.clone();
+        branchOffsets = new int[numberOfNets + 1];
+        for (int g = functions.length - 1; g >= 0; g--) {
+            if (observable[gateOutputs[g]]) {
+                for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+                    observable[faninIndices[p]] = true;
+                    branchOffsets[faninIndices[p] + 1]++;
+                }
+            }
+        }
+        for (int n = 0; n < numberOfNets; n++) {
+            branchOffsets[n + 1] += branchOffsets[n];
+        }
+        branchGates = new int[branchOffsets[numberOfNets]];
+        int[] fill = Arrays.copyOf(branchOffsets, numberOfNets);
+        for (int g = 0; g < functions.length; g++) {
+            if (observable[gateOutputs[g]]) {
+                for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+                    branchGates[fill[faninIndices[p]]++] = g;
+                }
+            }
+        }
+        states = new byte[numberOfNets];
+        critical = new boolean[numberOfNets];
+        remaining = new int[numberOfNets];
+        touched = new int[numberOfNets];
+
+        int[] levelOffsets = netlist.getLevelOffsets();
+        events = new int[netlist.getNumberOfLevels()][];
+        for (int l = 0; l < events.length; l++) {
+            events[l] = new int[levelOffsets[l + 1] - levelOffsets[l]];
+        }
+        eventCounts = new int[events.length];
+        pending = new long[(events.length + Long.SIZE - 1) / Long.SIZE];
+        queued = new boolean[functions.length];
+    }
+
+    public void apply(String inputVector) {
+
+        for (int i = 0; i < inputs.length; i++) {
+            int value = i < inputVector.length() ? Character.getNumericValue(inputVector.charAt(i)) & 1 : 0;
+            states[inputs[i]] = (byte) (3 * value);
+        }
+        for (int g = 0; g < functions.length; g++) {
+            states[gateOutputs[g]] = (byte) (3 * evaluate(g));
+        }
+
+        for (int g = functions.length - 1; g >= 0; g--) {
+            trace(gateOutputs[g]);
+        }
+        for (int i = 0; i < inputs.length; i++) {
+            trace(inputs[i]);
+        }
+    }
+
+    public List<FaultSimulator.Fault> getDetectedFaults() {
+
+        List<FaultSimulator.Fault> detected = new ArrayList<>();
+        for (int net = 0; net < critical.length; net++) {
+            int fault = critical[net] ? localFaults[2 * net + (~states[net] & 1)] : -1;
+            if (fault >= 0) {
+                detected.add(faults.get(fault));
+            }
+        }
+        return detected;
+    }
+
+    public List<FaultSimulator.Fault> getFaultList() {
+        return faults;
+    }
+
+    private void trace(int net) {
+
+        if (observed[net]) {
+            critical[net] = true;
+        } else if (branchOffsets[net + 1] == branchOffsets[net]) {
+            critical[net] = false;
+        } else if (branchOffsets[net + 1] - branchOffsets[net] == 1) {
+            int g = branchGates[branchOffsets[net]];
+            critical[net] = critical[gateOutputs[g]] && isSensitive(g, net);
+        } else {
+            critical[net] = resimulate(net);
+        }
+    }
+
+    private boolean isSensitive(int g, int net) {
+
+        int controlling;
+        switch (functions[g]) {
+            case Netlist.AND:
+            case Netlist.NAND:
+                controlling = 0;
+                break;
+            case Netlist.OR:
+            case Netlist.NOR:
+                controlling = 1;
+                break;
+            case Netlist.INV:
+            case Netlist.BUF:
+            case Netlist.XOR:
+            case Netlist.XNOR:
+                return true;
+            default:
+                throw new IllegalArgumentException("Unsupported logic gate " + functions[g]);
+        }
+        if ((states[net] & 1) == controlling) {
+            for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+                int in = faninIndices[p];
+                if (in != net && (states[in] & 1) == controlling) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+            if ((states[faninIndices[p]] & 1) == controlling) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean resimulate(int stem) {
+
+        boolean result = false;
+        open = 0;
+        openNets = 0;
+        change(stem, ~states[stem] & 1);
+
+        search:
+        for (int level = nextLevel(0); level >= 0; level = nextLevel(level + 1)) {
+            int[] bucket = events[level];
+            for (int e = 0; e < eventCounts[level]; e++) {
+                int g = bucket[e];
+                queued[g] = false;
+                int output = gateOutputs[g];
+                int value = resimulateGate(g);
+                if (value != (states[output] & 1)) {
+                    if (observed[output]) {
+                        result = true;
+                        break search;
+                    }
+                    change(output, value);
+                }
+                if (open == 0) {
+                    break search;
+                }
+                if (open == 1) {
+                    int frontier = openNets;
+                    if (frontier != stem && remaining[frontier] == branchOffsets[frontier + 1] - branchOffsets[frontier]) {
+                        result = critical[frontier];
+                        break search;
+                    }
+                }
+            }
+            eventCounts[level] = 0;
+            pending[level >>> 6] &= ~(1L << level);
+        }
+
+        for (int level = nextLevel(0); level >= 0; level = nextLevel(level + 1)) {
+            for (int e = 0; e < eventCounts[level]; e++) {
+                queued[events[level][e]] = false;
+            }
+            eventCounts[level] = 0;
+            pending[level >>> 6] &= ~(1L << level);
+        }
+        for (int t = 0; t < touchedCount; t++) {
+            states[touched[t]] = (byte) (3 * (states[touched[t]] & 1));
+        }
+        touchedCount = 0;
+        return result;
+    }
+
+    private void change(int net, int value) {
+
+        states[net] = (byte) ((states[net] & 1) | value << 1);
+        touched[touchedCount++] = net;
+        remaining[net] = branchOffsets[net + 1] - branchOffsets[net];
+        if (remaining[net] > 0) {
+            open++;
+            openNets ^= net;
+        }
+        for (int p = branchOffsets[net]; p < branchOffsets[net + 1]; p++) {
+            int g = branchGates[p];
+            if (!queued[g]) {
+                int level = levels[g];
+                queued[g] = true;
+                events[level][eventCounts[level]++] = g;
+                pending[level >>> 6] |= 1L << level;
+            }
+        }
+    }
+
+    private int nextLevel(int level) {
+
+        for (int w = level >>> 6; w < pending.length; w++) {
+            long word = w == level >>> 6 ? pending[w] & -1L << level : pending[w];
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return -1;
+    }
+
+    private int evaluate(int g) {
+
+        int and = 1;
+        int or = 0;
+        int xor = 0;
+        for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+            int value = states[faninIndices[p]] & 1;
+            and &= value;
+            or |= value;
+            xor ^= value;
+        }
+        return evaluate(functions[g], and, or, xor);
+    }
+
+    private int resimulateGate(int g) {
+
+        int and = 1;
+        int or = 0;
+        int xor = 0;
+        for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+            int in = faninIndices[p];
+            int state = states[in];
+            if (((state ^ state >> 1) & 1) != 0 && --remaining[in] == 0) {
+                open--;
+                openNets ^= in;
+            }
+            int value = state >> 1;
+            and &= value;
+            or |= value;
+            xor ^= value;
+        }
+        return evaluate(functions[g], and, or, xor);
+    }
+
+    private static int evaluate(int function, int and, int or, int xor) {
+
+        switch (function) {
+            case Netlist.INV:   return xor ^ 1;
+            case Netlist.BUF:   return xor;
+            case Netlist.AND:   return and;
+            case Netlist.OR:    return or;
+            case Netlist.NAND:  return and ^ 1;
+            case Netlist.NOR:   return or ^ 1;
+            case Netlist.XOR:   return xor;
+            case Netlist.XNOR:  return xor ^ 1;
+            default:            throw new IllegalArgumentException("Unsupported logic gate " + function);
+        }
+    }
+}
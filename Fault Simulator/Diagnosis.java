@@ -0,0 +1,345 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Arrays;
+import java.io.File;
+import java.io.FileReader;
+import java.io.BufferedReader;
+
+public class Diagnosis {
+
+    public static void main(String[] args) {
+
+        int top = 10;
+        List<String> operands = new ArrayList<>();
+        boolean valid = true;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-top") && i + 1 < args.length) {
+                    top = Integer.parseInt(args[++i]);
+                    valid &= top > 0;
+                } else {
+                    operands.add(args[i]);
+                }
+            }
+        } catch (NumberFormatException ex) {
+            valid = false;
+        }
+
+        if (!valid || operands.size() < 3 || operands.size() > 4) {
+            System.out.println("Usage: java Diagnosis [-top <n>] <circuit_file.txt> [<fault_file.txt>] <vector_file.txt> <failure_file.txt>");
+            System.exit(0);
+        }
+
+        File netListFile = new File(operands.get(0));
+        File faultListFile = operands.size() == 4 ? new File(operands.get(1)) : null;
+        File vectorFile = new File(operands.get(operands.size() - 2));
+        File failureFile = new File(operands.get(operands.size() - 1));
+        if (!netListFile.exists() || (faultListFile != null && !faultListFile.exists())) {
+            System.out.println("Error: Could not find the net list or fault list file");
+            System.exit(0);
+        }
+        if (!vectorFile.exists() || !failureFile.exists()) {
+            System.out.println("Error: Could not find the vector or failure file");
+            System.exit(0);
+        }
+
+        try {
+
+            FaultSimulator simulator = faultListFile == null
+                ? new FaultSimulator(netListFile)
+                : new FaultSimulator(netListFile, faultListFile);
+            List<String> inputVectors = readLines(vectorFile);
+            Diagnosis diagnosis = new Diagnosis(simulator.getNetlist(), simulator.getFaultList(), inputVectors);
+
+            String die = null;
+            List<String> failures = new ArrayList<>();
+            for (String line : readLines(failureFile)) {
+                String[] tokens = line.split("\\s+");
+                if (tokens[0].equals("die")) {
+                    if (die != null || !failures.isEmpty()) {
+                        diagnosis.print(die == null ? failureFile.getName() : die, failures, top);
+                    }
+                    die = tokens.length > 1 ? tokens[1] : "";
+                    failures.clear();
+                } else {
+                    failures.add(line);
+                }
+            }
+            diagnosis.print(die == null ? failureFile.getName() : die, failures, top);
+
+        } catch (Exception ex) {
+
+            System.out.println("Error: Unexpected input format");
+            System.exit(0);
+        }
+    }
+
+    private static List<String> readLines(File file) throws Exception {
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            while (line != null) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line.trim());
+                }
+                line = reader.readLine();
+            }
+        }
+        return lines;
+    }
+
+    private List<FaultSimulator.Fault> faults;
+    private int[] faninOffsets;
+    private int[] faninIndices;
+    private int[] drivers;
+    private int[] outputs;
+    private int[] outputPositions;
+    private int numberOfPatterns;
+    private long[] keys;
+    private int[] offsets;
+    private int[] entries;
+    private int[] codes;
+    private int[] totals;
+    private int[] explained;
+    private int[] candidates;
+    private int numberOfCandidates;
+    private int[] reach;
+    private int[] reachStamps;
+    private int[] visitStamps;
+    private int[] outputStamps;
+    private int[] stack;
+    private int stamp;
+    private int visit;
+
+    public Diagnosis(Netlist netlist, List<FaultSimulator.Fault> faults, List<String> inputVectors) {
+
+        this.faults = faults;
+        faninOffsets = netlist.getFaninOffsets();
+        faninIndices = netlist.getFaninIndices();
+        outputs = netlist.getOutputs();
+        numberOfPatterns = inputVectors.size();
+
+        int numberOfNets = netlist.getNumberOfNets();
+        int[] gateOutputs = netlist.getGateOutputs();
+        drivers = new int[numberOfNets];
+        Arrays.fill(drivers, -1);
+        for (int g = 0; g < gateOutputs.length; g++) {
+            drivers[gateOutputs[g]] = g;
+        }
+        outputPositions = new int[numberOfNets];
+        Arrays.fill(outputPositions, -1);
+        for (int i = outputs.length - 1; i >= 0; i--) {
+            outputPositions[outputs[i]] = i;
+        }
+        reach = new int[numberOfNets];
+        reachStamps = new int[numberOfNets];
+        visitStamps = new int[numberOfNets];
+        outputStamps = new int[outputs.length];
+        stack = new int[numberOfNets];
+        codes = new int[faults.size()];
+        for (int f = 0; f < faults.size(); f++) {
+            codes[f] = 2 * faults.get(f).getNet() + faults.get(f).getValue();
+        }
+        totals = new int[faults.size()];
+        explained = new int[faults.size()];
+        candidates = new int[faults.size()];
+
+        if ((double) numberOfPatterns * outputs.length * faults.size() >= Long.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many patterns to index");
+        }
+        buildIndex(netlist, inputVectors);
+    }
+
+    private void buildIndex(Netlist netlist, List<String> inputVectors) {
+
+        ParallelPatternSimulator parallel = new ParallelPatternSimulator(netlist, faults);
+        String[] block = inputVectors.toArray(new String[0]);
+        long[] errors = new long[outputs.length];
+        long[] pairs = new long[1024];
+        int count = 0;
+        long size = faults.size();
+        for (int offset = 0; offset < block.length; offset += Long.SIZE) {
+            parallel.initialize(block, offset, Math.min(Long.SIZE, block.length - offset));
+            for (int f = 0; f < faults.size(); f++) {
+                if (parallel.getOutputDetections(f, errors) == 0) {
+                    continue;
+                }
+                for (int i = 0; i < outputs.length; i++) {
+                    long word = errors[i];
+                    while (word != 0) {
+                        long key = (long) (offset + Long.numberOfTrailingZeros(word)) * outputs.length + i;
+                        if (count == pairs.length) {
+                            pairs = Arrays.copyOf(pairs, 2 * count);
+                        }
+                        pairs[count++] = key * size + f;
+                        totals[f]++;
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+
+        Arrays.sort(pairs, 0, count);
+        entries = new int[count];
+        int numberOfKeys = 0;
+        for (int e = 0; e < count; e++) {
+            entries[e] = (int) (pairs[e] % size);
+            if (e == 0 || pairs[e] / size != pairs[e - 1] / size) {
+                numberOfKeys++;
+            }
+        }
+        keys = new long[numberOfKeys];
+        offsets = new int[numberOfKeys + 1];
+        int k = -1;
+        for (int e = 0; e < count; e++) {
+            if (e == 0 || pairs[e] / size != pairs[e - 1] / size) {
+                keys[++k] = pairs[e] / size;
+                offsets[k] = e;
+            }
+        }
+        offsets[numberOfKeys] = count;
+    }
+
+    public int diagnose(long[] failures, int count) {
+
+        Arrays.sort(failures, 0, count);
+        int distinct = 0;
+        for (int e = 0; e < count; e++) {
+            if (e == 0 || failures[e] != failures[e - 1]) {
+                failures[distinct++] = failures[e];
+            }
+        }
+
+        stamp++;
+        int failingOutputs = 0;
+        for (int e = 0; e < distinct; e++) {
+            int position = (int) (failures[e] % outputs.length);
+            if (outputStamps[position] != stamp) {
+                outputStamps[position] = stamp;
+                traceCone(outputs[position]);
+                failingOutputs++;
+            }
+        }
+
+        if (!collect(failures, distinct, failingOutputs)) {
+            collect(failures, distinct, 0);
+        }
+
+        int[] ranked = Arrays.stream(candidates, 0, numberOfCandidates).boxed()
+            .sorted(this::compare).mapToInt(Integer::intValue).toArray();
+        System.arraycopy(ranked, 0, candidates, 0, numberOfCandidates);
+        return distinct;
+    }
+
+    private int compare(int x, int y) {
+
+        if (explained[x] != explained[y]) {
+            return Integer.compare(explained[y], explained[x]);
+        }
+        if (totals[x] != totals[y]) {
+            return Integer.compare(totals[x], totals[y]);
+        }
+        return Integer.compare(codes[x], codes[y]);
+    }
+
+    public int getNumberOfCandidates() {
+        return numberOfCandidates;
+    }
+
+    public FaultSimulator.Fault getCandidate(int rank) {
+        return faults.get(candidates[rank]);
+    }
+
+    public int getExplainedFailures(int rank) {
+        return explained[candidates[rank]];
+    }
+
+    public int getPredictedFailures(int rank) {
+        return totals[candidates[rank]];
+    }
+
+    public long getFailure(int pattern, int output) {
+
+        int position = output >= 0 && output < outputPositions.length ? outputPositions[output] : -1;
+        if (pattern < 0 || pattern >= numberOfPatterns || position < 0) {
+            throw new IllegalArgumentException("No primary output " + (output + 1) + " in pattern " + (pattern + 1));
+        }
+        return (long) pattern * outputs.length + position;
+    }
+
+    private boolean collect(long[] failures, int distinct, int failingOutputs) {
+
+        for (int c = 0; c < numberOfCandidates; c++) {
+            explained[candidates[c]] = 0;
+        }
+        numberOfCandidates = 0;
+        boolean complete = false;
+        for (int e = 0; e < distinct; e++) {
+            int k = Arrays.binarySearch(keys, failures[e]);
+            if (k < 0) {
+                continue;
+            }
+            for (int p = offsets[k]; p < offsets[k + 1]; p++) {
+                int f = entries[p];
+                int net = codes[f] >>> 1;
+                if (failingOutputs > 0 && (reachStamps[net] != stamp || reach[net] < failingOutputs)) {
+                    continue;
+                }
+                if (explained[f]++ == 0) {
+                    candidates[numberOfCandidates++] = f;
+                }
+                complete |= explained[f] == distinct;
+            }
+        }
+        return complete;
+    }
+
+    private void traceCone(int output) {
+
+        int top = 0;
+        visit++;
+        stack[top++] = output;
+        visitStamps[output] = visit;
+        while (top > 0) {
+            int net = stack[--top];
+            if (reachStamps[net] != stamp) {
+                reachStamps[net] = stamp;
+                reach[net] = 0;
+            }
+            reach[net]++;
+            int g = drivers[net];
+            if (g < 0) {
+                continue;
+            }
+            for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+                int in = faninIndices[p];
+                if (visitStamps[in] != visit) {
+                    visitStamps[in] = visit;
+                    stack[top++] = in;
+                }
+            }
+        }
+    }
+
+    private void print(String die, List<String> lines, int top) {
+
+        long[] failures = new long[lines.size()];
+        for (int e = 0; e < lines.size(); e++) {
+            String[] tokens = lines.get(e).split("\\s+");
+            failures[e] = getFailure(Integer.parseInt(tokens[0]) - 1, Integer.parseInt(tokens[1]) - 1);
+        }
+        int observed = diagnose(failures, failures.length);
+
+        System.out.println("die\t" + die);
+        for (int r = 0; r < numberOfCandidates && r < top; r++) {
+            FaultSimulator.Fault fault = getCandidate(r);
+            System.out.println("net\t" + (fault.getNet() + 1) + "\ts-a-" + fault.getValue()
+                             + "\texplains " + getExplainedFailures(r) + " of " + observed
+                             + "\tpredicts " + getPredictedFailures(r));
+        }
+        System.out.println();
+        System.out.println("Total candidates: " + numberOfCandidates);
+        System.out.println();
+    }
+}
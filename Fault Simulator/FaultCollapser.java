@@ -0,0 +1,139 @@
+public class FaultCollapser {
+
+    private int[] parents;
+    private int[] dominated;
+    private boolean[] kept;
+    private int numberOfFaults;
+
+    public FaultCollapser(Netlist netlist, boolean dominance) {
+
+        int[] functions = netlist.getFunctions();
+        int[] faninOffsets = netlist.getFaninOffsets();
+        int[] faninIndices = netlist.getFaninIndices();
+        int[] gateOutputs = netlist.getGateOutputs();
+        int[] outputs = netlist.getOutputs();
+
+        numberOfFaults = 2 * netlist.getNumberOfNets();
+        parents = new int[numberOfFaults];
+        dominated = new int[numberOfFaults];
+        kept = new boolean[numberOfFaults];
+        for (int f = 0; f < numberOfFaults; f++) {
+            parents[f] = f;
+            dominated[f] = -1;
+        }
+
+        int[] pins = new int[netlist.getNumberOfNets()];
+        for (int p = 0; p < faninIndices.length; p++) {
+            pins[faninIndices[p]]++;
+        }
+        for (int i = 0; i < outputs.length; i++) {
+            pins[outputs[i]]++;
+        }
+
+        for (int g = 0; g < functions.length; g++) {
+            int output = gateOutputs[g];
+            int controlling = getControllingValue(functions[g]);
+            int inversion = getInversion(functions[g]);
+            if (inversion < 0) {
+                continue;
+            }
+            for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+                int input = faninIndices[p];
+                if (pins[input] != 1) {
+                    continue;
+                }
+                if (controlling < 0) {
+                    union(2 * input, 2 * output + inversion);
+                    union(2 * input + 1, 2 * output + (1 ^ inversion));
+                } else {
+                    union(2 * input + controlling, 2 * output + (controlling ^ inversion));
+                }
+            }
+        }
+
+        for (int f = 0; f < numberOfFaults; f++) {
+            kept[f] = find(f) == f;
+        }
+
+        if (dominance) {
+            for (int g = 0; g < functions.length; g++) {
+                int controlling = getControllingValue(functions[g]);
+                if (controlling < 0 || getInversion(functions[g]) < 0) {
+                    continue;
+                }
+                int dominating = find(2 * gateOutputs[g] + ((controlling ^ 1) ^ getInversion(functions[g])));
+                for (int p = faninOffsets[g]; p < faninOffsets[g + 1] && kept[dominating]; p++) {
+                    int input = faninIndices[p];
+                    int fault = find(2 * input + (controlling ^ 1));
+                    if (pins[input] == 1 && kept[fault] && fault != dominating) {
+                        kept[dominating] = false;
+                        dominated[dominating] = fault;
+                    }
+                }
+            }
+        }
+    }
+
+    public int getTarget(int net, int value) {
+
+        int fault = find(2 * net + value);
+        while (!kept[fault]) {
+            fault = find(dominated[fault]);
+        }
+        return fault;
+    }
+
+    public int getNumberOfFaults() {
+        return numberOfFaults;
+    }
+
+    private int find(int fault) {
+
+        while (parents[fault] != fault) {
+            parents[fault] = parents[parents[fault]];
+            fault = parents[fault];
+        }
+        return fault;
+    }
+
+    private void union(int first, int second) {
+
+        int x = find(first);
+        int y = find(second);
+        if (x < y) {
+            parents[y] = x;
+        } else if (y < x) {
+            parents[x] = y;
+        }
+    }
+
+    private static int getControllingValue(int function) {
+
+        switch (function) {
+            case Netlist.AND:
+            case Netlist.NAND:
+                return 0;
+            case Netlist.OR:
+            case Netlist.NOR:
+                return 1;
+            default:
+                return -1;
+        }
+    }
+
+    private static int getInversion(int function) {
+
+        switch (function) {
+            case Netlist.BUF:
+            case Netlist.AND:
+            case Netlist.OR:
+                return 0;
+            case Netlist.INV:
+            case Netlist.NAND:
+            case Netlist.NOR:
+                return 1;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Arrays;
+import java.io.File;
+import java.io.FileReader;
+import java.io.BufferedReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class FaultDictionary {
+
+    public static void main(String[] args) {
+
+        if (args.length < 3) {
+            usage();
+        }
+
+        try {
+
+            switch (args[0]) {
+                case "build": {
+                    int threads = 1;
+                    List<String> operands = new ArrayList<>();
+                    for (int i = 1; i < args.length; i++) {
+                        if (args[i].equals("-threads") && i + 1 < args.length) {
+                            threads = Integer.parseInt(args[++i]);
+                        } else {
+                            operands.add(args[i]);
+                        }
+                    }
+                    if (operands.size() < 3 || operands.size() > 4 || threads < 1 || threads > 1024) {
+                        usage();
+                    }
+                    File netListFile = new File(operands.get(0));
+                    File vectorFile = new File(operands.get(operands.size() - 2));
+                    File faultListFile = operands.size() == 4 ? new File(operands.get(1)) : null;
+                    if (!netListFile.exists() || !vectorFile.exists() || (faultListFile != null && !faultListFile.exists())) {
+                        System.out.println("Error: Could not find the input files");
+                        System.exit(0);
+                    }
+                    FaultSimulator simulator = faultListFile == null
+                        ? new FaultSimulator(netListFile)
+                        : new FaultSimulator(netListFile, faultListFile);
+                    long vectors;
+                    try (BufferedReader reader = new BufferedReader(new FileReader(vectorFile))) {
+                        vectors = build(simulator.getNetlist(), simulator.getFaultList(), reader,
+                                        new File(operands.get(operands.size() - 1)), threads);
+                    }
+                    System.out.println("Faults: " + simulator.getFaultList().size());
+                    System.out.println("Vectors: " + vectors);
+                    break;
+                }
+                case "fault": {
+                    if (args.length != 4) {
+                        usage();
+                    }
+                    FaultDictionary dictionary = open(args[1]);
+                    int fault = dictionary.getFaultIndex(Integer.parseInt(args[2]) - 1, Integer.parseInt(args[3]));
+                    if (fault < 0) {
+                        System.out.println("Error: The fault is not in the dictionary");
+                        System.exit(0);
+                    }
+                    long total = 0;
+                    for (long vector = 0; vector < dictionary.getNumberOfVectors(); vector += Long.SIZE) {
+                        long word = dictionary.getDetections(fault, vector / Long.SIZE);
+                        while (word != 0) {
+                            System.out.println("vector\t" + (vector + Long.numberOfTrailingZeros(word) + 1));
+                            word &= word - 1;
+                            total++;
+                        }
+                    }
+                    System.out.println();
+                    System.out.println("Total vectors detecting: " + total);
+                    dictionary.close();
+                    break;
+                }
+                case "vector": {
+                    if (args.length != 3) {
+                        usage();
+                    }
+                    FaultDictionary dictionary = open(args[1]);
+                    long vector = Long.parseLong(args[2]) - 1;
+                    if (vector < 0 || vector >= dictionary.getNumberOfVectors()) {
+                        System.out.println("Error: The vector is not in the dictionary");
+                        System.exit(0);
+                    }
+                    int total = 0;
+                    for (int fault : dictionary.getDetectedFaults(vector)) {
+                        System.out.println("net\t" + (dictionary.getNet(fault) + 1) + "\ts-a-" + dictionary.getValue(fault));
+                        total++;
+                    }
+                    System.out.println();
+                    System.out.println("Total faults detected: " + total);
+                    dictionary.close();
+                    break;
+                }
+                default:
+                    usage();
+                    break;
+            }
+
+        } catch (Exception ex) {
+
+            System.out.println("Error: Unexpected input format");
+            System.exit(0);
+        }
+    }
+
+    private static FaultDictionary open(String path) throws Exception {
+
+        File dictionaryFile = new File(path);
+        if (!dictionaryFile.exists()) {
+            System.out.println("Error: Could not find the dictionary file");
+            System.exit(0);
+        }
+        return new FaultDictionary(dictionaryFile);
+    }
+
+    private static void usage() {
+
+        System.out.println("Usage: java FaultDictionary build [-threads <n>] <circuit_file.txt> [<fault_file.txt>] <vector_file.txt> <dictionary_file>\n"
+                         + "       java FaultDictionary fault <dictionary_file> <net> <stuck_at_value>\n"
+                         + "       java FaultDictionary vector <dictionary_file> <vector_number>");
+        System.exit(0);
+    }
+
+    private static final long WINDOW = 1L << 30;
+    private static final int MAGIC = 0x46444943;
+    private static final int VERSION = 1;
+    private static final int HEADER = 3;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private FileChannel channel;
+    private MappedByteBuffer[] windows;
+    private int numberOfFaults;
+    private long numberOfVectors;
+    private int[] codes;
+    private int[] indices;
+
+    public FaultDictionary(File dictionaryFile) throws Exception {
+
+        channel = FileChannel.open(dictionaryFile.toPath(), StandardOpenOption.READ);
+        long size = channel.size();
+        windows = new MappedByteBuffer[(int) ((size + WINDOW - 1) / WINDOW)];
+        if (size < HEADER * Long.BYTES || read(0) != ((long) MAGIC << 32 | VERSION)) {
+            throw new IllegalArgumentException("Not a fault dictionary");
+        }
+        numberOfFaults = (int) read(1);
+        numberOfVectors = read(2);
+        long blocks = (numberOfVectors + Long.SIZE - 1) / Long.SIZE;
+        if (size != (HEADER + numberOfFaults + blocks * numberOfFaults) * Long.BYTES) {
+            throw new IllegalArgumentException("Truncated fault dictionary");
+        }
+
+        codes = new int[numberOfFaults];
+        int maximum = 0;
+        for (int f = 0; f < numberOfFaults; f++) {
+            codes[f] = (int) read(HEADER + f);
+            maximum = Math.max(maximum, codes[f] + 1);
+        }
+        indices = new int[maximum];
+        Arrays.fill(indices, -1);
+        for (int f = 0; f < numberOfFaults; f++) {
+            indices[codes[f]] = f;
+        }
+    }
+
+    public static long build(Netlist netlist, List<FaultSimulator.Fault> faults, BufferedReader reader,
+                             File dictionaryFile, int threads) throws Exception {
+
+        ParallelPatternSimulator parallel = new ParallelPatternSimulator(netlist, faults);
+        parallel.setFaultDropping(false);
+        parallel.setThreads(threads);
+
+        Path target = dictionaryFile.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        long vectors = 0;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                Writer writer = new Writer(channel);
+                writer.put((long) MAGIC << 32 | VERSION);
+                writer.put(faults.size());
+                writer.put(0L);
+                for (int f = 0; f < faults.size(); f++) {
+                    writer.put(2 * faults.get(f).getNet() + faults.get(f).getValue());
+                }
+                String[] block = new String[Long.SIZE];
+                int count = 0;
+                String line = reader.readLine();
+                while (line != null) {
+                    line = line.trim();
+                    if (!line.isEmpty()) {
+                        block[count++] = line;
+                        if (count == block.length) {
+                            writeBlock(parallel, block, count, writer);
+                            vectors += count;
+                            count = 0;
+                        }
+                    }
+                    line = reader.readLine();
+                }
+                if (count > 0) {
+                    writeBlock(parallel, block, count, writer);
+                    vectors += count;
+                }
+                writer.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+                header.putLong(0, vectors);
+                while (header.hasRemaining()) {
+                    channel.write(header, 2 * Long.BYTES + header.position());
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return vectors;
+    }
+
+    private static void writeBlock(ParallelPatternSimulator parallel, String[] block, int count,
+                                   Writer writer) throws Exception {
+
+        parallel.initialize(block, 0, count);
+        parallel.run();
+        for (int f = 0; f < parallel.getFaultList().size(); f++) {
+            writer.put(parallel.getDetections(f));
+        }
+    }
+
+    public int getNumberOfFaults() {
+        return numberOfFaults;
+    }
+
+    public long getNumberOfVectors() {
+        return numberOfVectors;
+    }
+
+    public int getNet(int fault) {
+        return codes[fault] >>> 1;
+    }
+
+    public int getValue(int fault) {
+        return codes[fault] & 1;
+    }
+
+    public int getFaultIndex(int net, int value) {
+
+        int code = 2 * net + value;
+        return code >= 0 && code < indices.length ? indices[code] : -1;
+    }
+
+    public long getDetections(int fault, long block) {
+        return read(HEADER + numberOfFaults + block * numberOfFaults + fault);
+    }
+
+    public boolean isDetected(int fault, long vector) {
+        return (getDetections(fault, vector / Long.SIZE) >>> vector & 1) != 0;
+    }
+
+    public List<Integer> getDetectedFaults(long vector) {
+
+        List<Integer> detected = new ArrayList<>();
+        long block = vector / Long.SIZE;
+        for (int f = 0; f < numberOfFaults; f++) {
+            if ((getDetections(f, block) >>> vector & 1) != 0) {
+                detected.add(f);
+            }
+        }
+        detected.sort((x, y) -> Integer.compare(codes[x], codes[y]));
+        return detected;
+    }
+
+    public void close() throws Exception {
+        channel.close();
+    }
+
+    private long read(long index) {
+
+        long offset = index * Long.BYTES;
+        int w = (int) (offset / WINDOW);
+        if (windows[w] == null) {
+            try {
+                windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, w * WINDOW,
+                    Math.min(WINDOW, channel.size() - w * WINDOW));
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        return windows[w].getLong((int) (offset - w * WINDOW));
+    }
+
+    private static class Writer {
+
+        private FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void put(long value) throws Exception {
+
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.putLong(value);
+        }
+
+        private void flush() throws Exception {
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -1,6 +1,8 @@
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.io.File;
 import java.io.FileReader;
@@ -10,34 +12,120 @@ public class FaultSimulator {
 
     public static void main(String[] args) {
 
-        if (args.length < 2 || args.length > 3) {
-            System.out.println("Usage: java FaultSimulator <circuit_file.txt> <fault_file.txt> <input_vector>\n"
-                             + "       java FaultSimulator <circuit_file.txt> <input_vector>");
+        String engine = "deductive";
+        boolean sequence = false;
+        int threads = 1;
+        String collapse = null;
+        List<String> operands = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-engine") && i + 1 < args.length) {
+                engine = args[++i];
+            } else if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = parseThreads(args[++i]);
+            } else if (args[i].equals("-collapse") && i + 1 < args.length) {
+                collapse = args[++i];
+            } else if (args[i].equals("-sequence")) {
+                sequence = true;
+            } else {
+                operands.add(args[i]);
+            }
+        }
+
+        if (operands.size() < 2 || operands.size() > 3 || !ENGINES.contains(engine)
+                || threads < 1 || (threads > 1 && !engine.equals("ppsfp"))
+                || (collapse != null && !collapse.equals("equivalence") && !collapse.equals("dominance"))) {
+            System.out.println("Usage: java FaultSimulator [-engine <engine>] <circuit_file.txt> <fault_file.txt> <input_vector>\n"
+                             + "       java FaultSimulator [-engine <engine>] <circuit_file.txt> <input_vector>\n"
+                             + "       java FaultSimulator [-engine <engine>] -sequence <circuit_file.txt> [<fault_file.txt>] <vector_file.txt>\n"
+                             + "where <engine> is one of " + String.join(", ", ENGINES) + ", and -engine ppsfp also accepts -threads <n>\n"
+                             + "Add -collapse equivalence|dominance to simulate a collapsed fault list");
             System.exit(0);
         }
 
-        File netListFile = new File(args[0]);
+        File netListFile = new File(operands.get(0));
         if (!netListFile.exists()) {
             System.out.println("Error: Could not find the net list file");
             System.exit(0);
         }
 
-        File faultListFile = new File(args[args.length - 2]);
+        File faultListFile = new File(operands.get(operands.size() - 2));
         if (!faultListFile.exists()) {
             System.out.println("Error: Could not find the fault list file");
             System.exit(0);
         }
 
-        String inputVector = args[args.length - 1];
+        List<String> inputVectors = new ArrayList<>();
+        if (sequence) {
+            File vectorFile = new File(operands.get(operands.size() - 1));
+            if (!vectorFile.exists()) {
+                System.out.println("Error: Could not find the vector file");
+                System.exit(0);
+            }
+            try (BufferedReader reader = new BufferedReader(new FileReader(vectorFile))) {
+                String line = reader.readLine();
+                while (line != null) {
+                    if (!line.trim().isEmpty()) {
+                        inputVectors.add(line.trim());
+                    }
+                    line = reader.readLine();
+                }
+            } catch (Exception ex) {
+                System.out.println("Error: Could not read the vector file");
+                System.exit(0);
+            }
+        } else {
+            inputVectors.add(operands.get(operands.size() - 1));
+        }
 
         try {
 
-            FaultSimulator simulator = (args.length == 2)
+            FaultSimulator simulator = (operands.size() == 2)
                 ? new FaultSimulator(netListFile)
                 : new FaultSimulator(netListFile, faultListFile);
-            simulator.initialize(inputVector);
-            simulator.run();
-            simulator.printDetectedFaults();
+            if (collapse != null) {
+                simulator.collapse(collapse.equals("dominance"));
+            }
+            switch (engine) {
+                case "ppsfp":
+                    ParallelPatternSimulator parallel =
+                        new ParallelPatternSimulator(simulator.getNetlist(), simulator.getFaultList());
+                    parallel.setFaultDropping(false);
+                    parallel.setThreads(threads);
+                    String[] block = inputVectors.toArray(new String[0]);
+                    for (int offset = 0; offset < block.length; offset += Long.SIZE) {
+                        int count = Math.min(Long.SIZE, block.length - offset);
+                        parallel.initialize(block, offset, count);
+                        parallel.run();
+                        for (int k = 0; k < count; k++) {
+                            printFaults(block[offset + k],
+                                simulator.expandDetectedFaults(parallel.getDetectedFaults(k)), sequence);
+                        }
+                    }
+                    break;
+                case "concurrent":
+                    ConcurrentFaultSimulator concurrent =
+                        new ConcurrentFaultSimulator(simulator.getNetlist(), simulator.getFaultList());
+                    for (String inputVector : inputVectors) {
+                        concurrent.apply(inputVector);
+                        printFaults(inputVector, simulator.expandDetectedFaults(concurrent.getDetectedFaults()), sequence);
+                    }
+                    break;
+                case "critical":
+                    CriticalPathTracer tracer =
+                        new CriticalPathTracer(simulator.getNetlist(), simulator.getFaultList());
+                    for (String inputVector : inputVectors) {
+                        tracer.apply(inputVector);
+                        printFaults(inputVector, simulator.expandDetectedFaults(tracer.getDetectedFaults()), sequence);
+                    }
+                    break;
+                default:
+                    for (String inputVector : inputVectors) {
+                        simulator.initialize(inputVector);
+                        simulator.run();
+                        printFaults(inputVector, simulator.expandDetectedFaults(simulator.getDetectedFaults()), sequence);
+                    }
+                    break;
+            }
 
         } catch (Exception ex) {
 
@@ -46,21 +134,31 @@ public class FaultSimulator {
         }
     }
 
-    private class Gate {
-        private String function;
-        private int[] inputs;
-        private int output;
-    }
+    private static final List<String> ENGINES = Arrays.asList("deductive", "ppsfp", "concurrent", "critical");
+    private static final int MAX_THREADS = 1024;
 
-    private class Net {
-        private List<Fault> faults;
-        private int value;
+    private static int parseThreads(String value) {
+
+        try {
+            int threads = Integer.parseInt(value);
+            return threads > MAX_THREADS ? -1 : threads;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
     }
 
-    public class Fault {
+    public static class Fault {
         private int net;
         private int value;
 
+        public int getNet() {
+            return net;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
         @Override
         public boolean equals(Object other) {
             if (other == this) return true;
@@ -68,78 +166,92 @@ public class FaultSimulator {
             Fault that = (Fault) other;
             return (this.net == that.net) && (this.value == that.value);
         }
+
+        @Override
+        public int hashCode() {
+            return 2 * net + value;
+        }
     }
 
-    private List<Fault> faults = new LinkedList<>();
-    private List<Gate> gates = new LinkedList<>();
-    private List<Gate> removed = new LinkedList<>();
-    private Net[] nets;
+    private List<Fault> faults = new ArrayList<>();
+    private List<Fault> allFaults;
+    private int[] targets;
+    private Netlist netlist;
+    private int[] functions;
+    private int[] faninOffsets;
+    private int[] faninIndices;
+    private int[] gateOutputs;
     private int[] inputs;
     private int[] outputs;
+    private int[] values;
+    private int[] localFaults;
+    private long[][] faultSets;
+    private long[] detected;
+    private int words;
+    private int[] pins;
+    private int[] remaining;
+    private boolean[] observed;
+    private Deque<long[]> pool = new ArrayDeque<>();
 
     public FaultSimulator(File netListFile) throws Exception {
 
         parseNetListFile(netListFile);
         createFaultList();
+        indexFaults();
     }
 
     public FaultSimulator(File netListFile, File faultListFile) throws Exception {
 
         parseNetListFile(netListFile);
         parseFaultListFile(faultListFile);
+        indexFaults();
     }
 
     public void initialize(String inputVector) {
 
-        if (gates.isEmpty()) {
-            List<Gate> temp = gates;
-            gates = removed;
-            removed = temp;
+        for (int i = 0; i < faultSets.length; i++) {
+            release(i);
         }
-
-        for (int i = 0; i < nets.length; i++) {
-            Net net = new Net();
-            net.faults = new LinkedList<>();
-            for (Fault fault : faults) {
-                if (fault.net == i) {
-                    net.faults.add(fault);
-                }
-            }
-            net.value = -1;
-            nets[i] = net;
-        }
-        for (int i = 0; i < inputVector.length(); i++) {
-            int value = Character.getNumericValue(inputVector.charAt(i)) & 1;
-            Net net = nets[inputs[i]];
-            net.value = value;
-            ListIterator<Fault> iterator = net.faults.listIterator();
-            while (iterator.hasNext()) {
-                Fault fault = iterator.next();
-                if (fault.value == value) {
-                    iterator.remove();
-                }
+        Arrays.fill(values, -1);
+        Arrays.fill(detected, 0L);
+        System.arraycopy(pins, 0, remaining, 0, pins.length);
+        for (int i = 0; i < inputs.length; i++) {
+            int net = inputs[i];
+            if (faultSets[net] != null) {
+                continue;
             }
+            values[net] = i < inputVector.length() ? Character.getNumericValue(inputVector.charAt(i)) & 1 : -1;
+            faultSets[net] = acquire();
+            addLocalFaults(net);
+            settle(net);
         }
     }
 
     public void run() {
 
-        while (!gates.isEmpty()) {
-            ListIterator<Gate> iterator = gates.listIterator();
-            while (iterator.hasNext()) {
-                Gate gate = iterator.next();
-                if (isGateReady(gate)) {
-                    evaluateGate(gate);
-                    removed.add(gate);
-                    iterator.remove();
-                }
-            }
+        for (int g = 0; g < functions.length; g++) {
+            evaluateGate(g);
         }
     }
 
     public void printDetectedFaults() {
 
-        List<Fault> detected = getDetectedFaults();
+        printFaults(getDetectedFaults());
+    }
+
+    private static void printFaults(String inputVector, List<Fault> detected, boolean sequence) {
+
+        if (sequence) {
+            System.out.println("vector\t" + inputVector);
+        }
+        printFaults(detected);
+        if (sequence) {
+            System.out.println();
+        }
+    }
+
+    private static void printFaults(List<Fault> detected) {
+
         for (Fault fault : detected) {
             System.out.println("net\t" + (fault.net + 1) + "\ts-a-" + fault.value);
         }
@@ -151,17 +263,77 @@ public class FaultSimulator {
         return faults;
     }
 
+    public List<Fault> getFullFaultList() {
+        return allFaults != null ? allFaults : faults;
+    }
+
+    public int[] getFaultClassSizes() {
+
+        int[] sizes = new int[faults.size()];
+        if (allFaults == null) {
+            Arrays.fill(sizes, 1);
+        } else {
+            for (int k = 0; k < targets.length; k++) {
+                sizes[targets[k]]++;
+            }
+        }
+        return sizes;
+    }
+
+    public void collapse(boolean dominance) {
+
+        FaultCollapser collapser = new FaultCollapser(netlist, dominance);
+        List<Fault> full = getFullFaultList();
+        List<Fault> collapsed = new ArrayList<>();
+        int[] indices = new int[collapser.getNumberOfFaults()];
+        Arrays.fill(indices, -1);
+        targets = new int[full.size()];
+        for (int k = 0; k < full.size(); k++) {
+            Fault fault = full.get(k);
+            int target = collapser.getTarget(fault.net, fault.value);
+            if (indices[target] < 0) {
+                Fault representative = new Fault();
+                representative.net = target >>> 1;
+                representative.value = target & 1;
+                indices[target] = collapsed.size();
+                collapsed.add(representative);
+            }
+            targets[k] = indices[target];
+        }
+        allFaults = full;
+        faults = collapsed;
+        indexFaults();
+    }
+
+    public List<Fault> expandDetectedFaults(List<Fault> detected) {
+
+        if (allFaults == null) {
+            return detected;
+        }
+        boolean[] found = new boolean[faults.size()];
+        for (Fault fault : detected) {
+            found[localFaults[2 * fault.net + fault.value]] = true;
+        }
+        List<Fault> expanded = new ArrayList<>();
+        for (int k = 0; k < allFaults.size(); k++) {
+            if (found[targets[k]]) {
+                expanded.add(allFaults.get(k));
+            }
+        }
+        Collections.sort(expanded, (x, y) -> x.net != y.net ? Integer.compare(x.net, y.net) : Integer.compare(x.value, y.value));
+        return expanded;
+    }
+
     public List<Fault> getDetectedFaults() {
-        List<Fault> detected = new LinkedList<>();
-        for (int i = 0; i < outputs.length; i++) {
-            Net net = nets[outputs[i]];
-            for (Fault fault : net.faults) {
-                if (!detected.contains(fault)) {
-                    detected.add(fault);
-                }
+        List<Fault> detected = new ArrayList<>();
+        for (int w = 0; w < words; w++) {
+            long word = this.detected[w];
+            while (word != 0) {
+                detected.add(faults.get(w * Long.SIZE + Long.numberOfTrailingZeros(word)));
+                word &= word - 1;
             }
         }
-        Collections.sort(detected, (x, y) -> Integer.compare(x.net, y.net));
+        Collections.sort(detected, (x, y) -> x.net != y.net ? Integer.compare(x.net, y.net) : Integer.compare(x.value, y.value));
         return detected;
     }
 
@@ -169,26 +341,35 @@ public class FaultSimulator {
         return inputs.length;
     }
 
-    private void parseNetListFile(File netListFile) throws Exception {
+    public Netlist getNetlist() {
+        return netlist;
+    }
 
-        BufferedReader reader = new BufferedReader(new FileReader(netListFile));
-        String line = reader.readLine();
-        int numberOfNets = 0;
+    private void parseNetListFile(File netListFile) throws Exception {
 
-        while (line != null) {
-            int net = parseLine(line);
-            if (net > numberOfNets) {
-                numberOfNets = net;
-            }
-            line = reader.readLine();
+        netlist = Netlist.load(netListFile);
+        functions = netlist.getFunctions();
+        faninOffsets = netlist.getFaninOffsets();
+        faninIndices = netlist.getFaninIndices();
+        gateOutputs = netlist.getGateOutputs();
+        inputs = netlist.getInputs();
+        outputs = netlist.getOutputs();
+        values = new int[netlist.getNumberOfNets()];
+        faultSets = new long[netlist.getNumberOfNets()][];
+        pins = new int[netlist.getNumberOfNets()];
+        remaining = new int[netlist.getNumberOfNets()];
+        observed = new boolean[netlist.getNumberOfNets()];
+        for (int p = 0; p < faninIndices.length; p++) {
+            pins[faninIndices[p]]++;
+        }
+        for (int i = 0; i < outputs.length; i++) {
+            observed[outputs[i]] = true;
         }
-
-        nets = new Net[numberOfNets];
     }
 
     private void createFaultList() {
 
-        for (int i = 0; i < nets.length; i++) {
+        for (int i = 0; i < values.length; i++) {
             Fault sa0 = new Fault();
             Fault sa1 = new Fault();
             sa0.net = i;
@@ -216,181 +397,163 @@ public class FaultSimulator {
         }
     }
 
-    private int parseLine(String line) {
-
-        int net = 0;
-        String[] tokens = line.split("\\s+");
-        if (tokens.length > 2) {
-            String function = parseFunction(tokens);
-            int[] in = parseInputs(tokens);
-            int out = parseOutput(tokens);
-            initializeGate(tokens, function, in, out);
-            net = getNumberOfNets(in, out);
-        }
-        return net;
-    }
-
-    private String parseFunction(String[] tokens) {
-
-        return tokens[0];
-    }
-
-    private int[] parseInputs(String[] tokens) {
-
-        int[] in = new int[tokens.length - 2];
-        for (int i = 1; i < tokens.length - 1; i++) {
-            int net = Integer.parseInt(tokens[i]);
-            in[i - 1] = net - 1;
-        }
-        return in;
-    }
-
-    private int parseOutput(String[] tokens) {
-
-        return Integer.parseInt(tokens[tokens.length - 1]) - 1;
-    }
-
-    private void initializeGate(String[] tokens, String function, int[] in, int out) {
+    private void indexFaults() {
 
-        switch (function) {
-            case "INPUT":
-                inputs = new int[tokens.length - 2];
-                for (int i = 1; i < tokens.length - 1; i++) {
-                    inputs[i - 1] = Integer.parseInt(tokens[i]) - 1;
-                }
-                break;
-            case "OUTPUT":
-                outputs = new int[tokens.length - 2];
-                for (int i = 1; i < tokens.length - 1; i++) {
-                    outputs[i - 1] = Integer.parseInt(tokens[i]) - 1;
-                }
-                break;
-            default:
-                Gate gate = new Gate();
-                gate.function = function;
-                gate.inputs = in;
-                gate.output = out;
-                gates.add(gate);
-                break;
-        }
-    }
-
-    private int getNumberOfNets(int[] in, int out) {
-
-        int numberOfNets = out;
-        for (int i : in) {
-            if (i > numberOfNets) {
-                numberOfNets = i;
+        List<Fault> unique = new ArrayList<>(faults.size());
+        localFaults = new int[2 * values.length];
+        Arrays.fill(localFaults, -1);
+        for (Fault fault : faults) {
+            if (fault.net < 0 || fault.net >= values.length || (fault.value & ~1) != 0) {
+                throw new IllegalArgumentException("Fault on net " + (fault.net + 1) + " is not in the circuit");
             }
-        }
-        return numberOfNets + 1;
-    }
-
-    private boolean isGateReady(Gate gate) {
-        for (int input : gate.inputs) {
-            if (nets[input].value == -1) {
-                return false;
+            if (localFaults[2 * fault.net + fault.value] < 0) {
+                localFaults[2 * fault.net + fault.value] = unique.size();
+                unique.add(fault);
             }
         }
-        return true;
+        faults = unique;
+        words = (faults.size() + Long.SIZE - 1) / Long.SIZE;
+        detected = new long[words];
     }
 
-    private void evaluateGate(Gate gate) {
+    private void evaluateGate(int g) {
         int value = 0;
-        int[] in = gate.inputs;
-        List<Fault> faults = null;
-        switch (gate.function) {
-            case "INV":
-                value = nets[in[0]].value == 0 ? 1 : 0;
-                faults = faultListInv(gate);
+        int first = faninOffsets[g];
+        int last = faninOffsets[g + 1];
+        long[] faults = acquire();
+        switch (functions[g]) {
+            case Netlist.INV:
+                value = values[faninIndices[first]] == 0 ? 1 : 0;
+                faultListInv(g, faults);
                 break;
-            case "BUF":
-                value = nets[in[0]].value;
-                faults = faultListInv(gate);
+            case Netlist.BUF:
+                value = values[faninIndices[first]];
+                faultListInv(g, faults);
                 break;
-            case "AND":
+            case Netlist.AND:
                 value = 1;
-                for (int i : in) {
-                    value = value & nets[i].value;
+                for (int p = first; p < last; p++) {
+                    value = value & values[faninIndices[p]];
                 }
-                faults = faultList(gate, 0);
+                faultList(g, 0, faults);
                 break;
-            case "OR":
+            case Netlist.OR:
                 value = 0;
-                for (int i : in) {
-                    value = value | nets[i].value;
+                for (int p = first; p < last; p++) {
+                    value = value | values[faninIndices[p]];
                 }
-                faults = faultList(gate, 1);
+                faultList(g, 1, faults);
                 break;
-            case "NAND":
+            case Netlist.NAND:
                 value = 1;
-                for (int i : in) {
-                    value = value & nets[i].value;
+                for (int p = first; p < last; p++) {
+                    value = value & values[faninIndices[p]];
                 }
                 value = value == 0 ? 1 : 0;
-                faults = faultList(gate, 0);
+                faultList(g, 0, faults);
                 break;
-            case "NOR":
+            case Netlist.NOR:
                 value = 0;
-                for (int i : in) {
-                    value = value | nets[i].value;
+                for (int p = first; p < last; p++) {
+                    value = value | values[faninIndices[p]];
                 }
                 value = value == 0 ? 1 : 0;
-                faults = faultList(gate, 1);
+                faultList(g, 1, faults);
                 break;
             default:
                 System.out.println("Error: Unsupported logic gate");
                 System.exit(0);
                 break;
         }
-        Net net = nets[gate.output];
-        net.value = value;
-        ListIterator<Fault> iterator = faults.listIterator();
-        while (iterator.hasNext()) {
-            Fault fault = iterator.next();
-            if ((fault.net == gate.output) && (fault.value == value)) {
-                iterator.remove();
+        int output = gateOutputs[g];
+        release(output);
+        values[output] = value;
+        faultSets[output] = faults;
+        addLocalFaults(output);
+        for (int p = first; p < last; p++) {
+            if (--remaining[faninIndices[p]] == 0) {
+                release(faninIndices[p]);
             }
         }
-        net.faults = faults;
+        settle(output);
     }
 
-    List<Fault> faultListInv(Gate gate) {
+    void faultListInv(int g, long[] faults) {
 
-        List<Fault> faults = new LinkedList<>();
-        faults.addAll(nets[gate.inputs[0]].faults);
-        faults.addAll(nets[gate.output].faults);
-        return faults;
+        System.arraycopy(faultSets[faninIndices[faninOffsets[g]]], 0, faults, 0, words);
     }
 
-    List<Fault> faultList(Gate gate, int ctrl) {
+    void faultList(int g, int ctrl, long[] faults) {
 
-        List<Fault> faults = new LinkedList<>();
-        List<Net> controllingValues = new LinkedList<>();
-        List<Net> noncontrollingValues = new LinkedList<>();
-        for (int i : gate.inputs) {
-            Net net = nets[i];
-            if (net.value == ctrl) {
-                controllingValues.add(net);
+        int controlling = 0;
+        for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+            long[] in = faultSets[faninIndices[p]];
+            if (values[faninIndices[p]] != ctrl) {
+                continue;
+            }
+            if (controlling++ == 0) {
+                System.arraycopy(in, 0, faults, 0, words);
             } else {
-                noncontrollingValues.add(net);
+                for (int w = 0; w < words; w++) {
+                    faults[w] &= in[w];
+                }
             }
         }
-        if (controllingValues.size() == 0) {
-            for (Net net : noncontrollingValues) {
-                faults.addAll(net.faults);
+        for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+            long[] in = faultSets[faninIndices[p]];
+            if (values[faninIndices[p]] == ctrl) {
+                continue;
             }
-        } else if (controllingValues.size() == 1) {
-            faults.addAll(controllingValues.get(0).faults);
-            for (Net net : noncontrollingValues) {
-                for (Fault fault : net.faults) {
-                    if (faults.contains(fault)) {
-                        faults.remove(fault);
-                    }
+            if (controlling == 0) {
+                for (int w = 0; w < words; w++) {
+                    faults[w] |= in[w];
+                }
+            } else {
+                for (int w = 0; w < words; w++) {
+                    faults[w] &= ~in[w];
                 }
             }
         }
-        faults.addAll(nets[gate.output].faults);
+    }
+
+    private void addLocalFaults(int net) {
+
+        for (int value = 0; value < 2; value++) {
+            int fault = localFaults[2 * net + value];
+            if (fault >= 0 && values[net] != value) {
+                faultSets[net][fault >>> 6] |= 1L << fault;
+            }
+        }
+    }
+
+    private void settle(int net) {
+
+        if (observed[net]) {
+            long[] faults = faultSets[net];
+            for (int w = 0; w < words; w++) {
+                detected[w] |= faults[w];
+            }
+        }
+        if (remaining[net] == 0) {
+            release(net);
+        }
+    }
+
+    private long[] acquire() {
+
+        long[] faults = pool.poll();
+        if (faults == null) {
+            return new long[words];
+        }
+        Arrays.fill(faults, 0L);
         return faults;
     }
-}
\ No newline at end of file
+
+    private void release(int net) {
+
+        if (faultSets[net] != null) {
+            pool.push(faultSets[net]);
+            faultSets[net] = null;
+        }
+    }
+}
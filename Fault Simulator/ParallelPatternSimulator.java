@@ -0,0 +1,446 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class ParallelPatternSimulator {
+
+    private static final int CHUNK_SIZE = 256;
+    private static final int MAX_DETECTIONS = 15;
+
+    private List<FaultSimulator.Fault> faults;
+    private int[] functions;
+    private int[] faninOffsets;
+    private int[] faninIndices;
+    private int[] gateOutputs;
+    private int[] levels;
+    private int[] fanoutOffsets;
+    private int[] fanoutIndices;
+    private int[] inputs;
+    private int[] outputs;
+    private int[] levelOffsets;
+    private boolean[] observed;
+    private long[] good;
+    private long[] launch;
+    private boolean transition;
+    private long[] detections;
+    private long[] completions;
+    private long[] counters;
+    private long[] previousCounters;
+    private AtomicLongArray detected;
+    private boolean dropping = true;
+    private int limit = 1;
+    private Worker[] workers;
+    private ForkJoinPool pool;
+    private long valid;
+    private int patterns;
+
+    public ParallelPatternSimulator(Netlist netlist, List<FaultSimulator.Fault> faults) {
+
+        this.faults = faults;
+        functions = netlist.getFunctions();
+        faninOffsets = netlist.getFaninOffsets();
+        faninIndices = netlist.getFaninIndices();
+        gateOutputs = netlist.getGateOutputs();
+        levels = netlist.getLevels();
+        fanoutOffsets = netlist.getFanoutOffsets();
+        fanoutIndices = netlist.getFanoutIndices();
+        inputs = netlist.getInputs();
+        outputs = netlist.getOutputs();
+
+        int numberOfNets = netlist.getNumberOfNets();
+        observed = new boolean[numberOfNets];
+        for (int i = 0; i < outputs.length; i++) {
+            observed[outputs[i]] = true;
+        }
+        good = new long[numberOfNets];
+        levelOffsets = netlist.getLevelOffsets();
+        detections = new long[faults.size()];
+        completions = new long[faults.size()];
+        counters = new long[(faults.size() + 15) / 16];
+        previousCounters = new long[counters.length];
+        detected = new AtomicLongArray((faults.size() + Long.SIZE - 1) / Long.SIZE);
+        setThreads(1);
+    }
+
+    public void setThreads(int threads) {
+
+        workers = new Worker[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Worker();
+        }
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    public void setFaultDropping(boolean dropping) {
+        this.dropping = dropping;
+    }
+
+    public void setDetectionLimit(int limit) {
+
+        if (limit < 1 || limit > MAX_DETECTIONS) {
+            throw new IllegalArgumentException("The detection limit must be from 1 to " + MAX_DETECTIONS);
+        }
+        this.limit = limit;
+    }
+
+    public int getDetectionLimit() {
+        return limit;
+    }
+
+    public void initialize(String[] inputVectors, int offset, int count) {
+
+        if (count < 1 || count > Long.SIZE) {
+            throw new IllegalArgumentException("From 1 to " + Long.SIZE + " input vectors can be simulated at once");
+        }
+        Arrays.fill(good, 0L);
+        for (int k = 0; k < count; k++) {
+            String inputVector = inputVectors[offset + k];
+            for (int i = 0; i < inputVector.length() && i < inputs.length; i++) {
+                long value = Character.getNumericValue(inputVector.charAt(i)) & 1;
+                good[inputs[i]] |= value << k;
+            }
+        }
+        patterns = count;
+        valid = count == Long.SIZE ? -1L : (1L << count) - 1;
+        transition = false;
+        simulateGood();
+    }
+
+    public void initialize(long[] inputWords, int count) {
+
+        if (count < 1 || count > Long.SIZE) {
+            throw new IllegalArgumentException("From 1 to " + Long.SIZE + " input vectors can be simulated at once");
+        }
+        patterns = count;
+        valid = count == Long.SIZE ? -1L : (1L << count) - 1;
+        Arrays.fill(good, 0L);
+        for (int i = 0; i < inputs.length; i++) {
+            good[inputs[i]] = inputWords[i] & valid;
+        }
+        transition = false;
+        simulateGood();
+    }
+
+    public void initialize(String[] launchVectors, String[] captureVectors, int offset, int count) {
+
+        initialize(launchVectors, offset, count);
+        saveLaunch();
+        initialize(captureVectors, offset, count);
+        transition = true;
+    }
+
+    public void initialize(long[] launchWords, long[] captureWords, int count) {
+
+        initialize(launchWords, count);
+        saveLaunch();
+        initialize(captureWords, count);
+        transition = true;
+    }
+
+    private void saveLaunch() {
+
+        if (launch == null) {
+            launch = new long[good.length];
+        }
+        System.arraycopy(good, 0, launch, 0, good.length);
+    }
+
+    private long getActivation(int net, int value) {
+
+        if (!transition) {
+            return -1L;
+        }
+        return value == 0 ? ~launch[net] : launch[net];
+    }
+
+    private void simulateGood() {
+
+        Worker worker = workers[0];
+        for (int g = 0; g < functions.length; g++) {
+            good[gateOutputs[g]] = worker.evaluate(g, good);
+        }
+    }
+
+    public void run() {
+
+        System.arraycopy(counters, 0, previousCounters, 0, counters.length);
+        if (pool == null) {
+            workers[0].simulate(0, faults.size());
+            return;
+        }
+        AtomicInteger next = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>(workers.length);
+        for (Worker each : workers) {
+            tasks.add(() -> {
+                int first = next.getAndAdd(CHUNK_SIZE);
+                while (first < faults.size()) {
+                    each.simulate(first, Math.min(faults.size(), first + CHUNK_SIZE));
+                    first = next.getAndAdd(CHUNK_SIZE);
+                }
+                return null;
+            });
+        }
+        for (Future<Void> task : pool.invokeAll(tasks)) {
+            try {
+                task.get();
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    public void truncate(int count) {
+
+        if (count < 1 || count > patterns) {
+            throw new IllegalArgumentException("From 1 to " + patterns + " patterns can be kept");
+        }
+        long mask = count == Long.SIZE ? -1L : (1L << count) - 1;
+        System.arraycopy(previousCounters, 0, counters, 0, counters.length);
+        for (int f = 0; f < faults.size(); f++) {
+            detections[f] &= mask;
+            completions[f] = 0L;
+            if (detections[f] != 0) {
+                count(f, detections[f]);
+            } else if (getDetectionCount(f) == 0) {
+                detected.set(f >>> 6, detected.get(f >>> 6) & ~(1L << f));
+            }
+        }
+        patterns = count;
+        valid &= mask;
+    }
+
+    private void markDetected(int fault) {
+
+        int w = fault >>> 6;
+        long bit = 1L << fault;
+        long word = detected.get(w);
+        while ((word & bit) == 0 && !detected.compareAndSet(w, word, word | bit)) {
+            word = detected.get(w);
+        }
+    }
+
+    public boolean isDetected(int fault) {
+        return (detected.get(fault >>> 6) >>> fault & 1) != 0;
+    }
+
+    public int getNumberOfPatterns() {
+        return patterns;
+    }
+
+    public long getDetections(int fault) {
+        return detections[fault];
+    }
+
+    public long getCompletions(int fault) {
+        return completions[fault];
+    }
+
+    public int getDetectionCount(int fault) {
+        return (int) (counters[fault >>> 4] >>> ((fault & 15) << 2)) & 15;
+    }
+
+    private void count(int fault, long patterns) {
+
+        int before = getDetectionCount(fault);
+        int after = Math.min(MAX_DETECTIONS, before + Long.bitCount(patterns));
+        int shift = (fault & 15) << 2;
+        counters[fault >>> 4] += (long) (after - before) << shift;
+        if (before < limit && after >= limit) {
+            for (int k = before + 1; k < limit; k++) {
+                patterns &= patterns - 1;
+            }
+            completions[fault] = Long.lowestOneBit(patterns);
+        }
+    }
+
+    public long getOutputDetections(int fault, long[] errors) {
+        return workers[0].propagate(faults.get(fault).getNet(), faults.get(fault).getValue(), errors);
+    }
+
+    public int getNumberOfDetectedFaults() {
+
+        int count = 0;
+        for (int w = 0; w < detected.length(); w++) {
+            count += Long.bitCount(detected.get(w));
+        }
+        return count;
+    }
+
+    public List<FaultSimulator.Fault> getFaultList() {
+        return faults;
+    }
+
+    public List<FaultSimulator.Fault> getDetectedFaults(int pattern) {
+
+        List<FaultSimulator.Fault> detected = new ArrayList<>();
+        for (int f = 0; f < faults.size(); f++) {
+            if ((detections[f] >>> pattern & 1) != 0) {
+                detected.add(faults.get(f));
+            }
+        }
+        Collections.sort(detected, (x, y) -> x.getNet() != y.getNet()
+            ? Integer.compare(x.getNet(), y.getNet()) : Integer.compare(x.getValue(), y.getValue()));
+        return detected;
+    }
+
+    private class Worker {
+
+        private long[] faulty = new long[good.length];
+        private boolean[] changed = new boolean[good.length];
+        private int[] touched = new int[good.length];
+        private int touchedCount;
+        private int[][] events = new int[levelOffsets.length - 1][];
+        private int[] eventCounts = new int[events.length];
+        private boolean[] queued = new boolean[functions.length];
+
+        private Worker() {
+
+            for (int l = 0; l < events.length; l++) {
+                events[l] = new int[levelOffsets[l + 1] - levelOffsets[l]];
+            }
+        }
+
+        private void simulate(int first, int last) {
+
+            for (int f = first; f < last; f++) {
+                detections[f] = 0L;
+                completions[f] = 0L;
+                if (dropping && getDetectionCount(f) >= limit) {
+                    continue;
+                }
+                detections[f] = propagate(faults.get(f).getNet(), faults.get(f).getValue(), null);
+                if (detections[f] != 0) {
+                    markDetected(f);
+                    count(f, detections[f]);
+                }
+            }
+        }
+
+        private long propagate(int net, int value, long[] errors) {
+
+            long stuck = value == 0 ? 0L : -1L;
+            long activation = getActivation(net, value) & valid;
+            long difference = (stuck ^ good[net]) & activation;
+            if (difference == 0) {
+                if (errors != null) {
+                    Arrays.fill(errors, 0L);
+                }
+                return 0L;
+            }
+
+            long patterns = 0L;
+            mark(net, stuck);
+            if (observed[net]) {
+                patterns |= difference;
+            }
+            scheduleFanouts(net);
+
+            for (int level = 0; level < events.length; level++) {
+                int[] bucket = events[level];
+                for (int e = 0; e < eventCounts[level]; e++) {
+                    int g = bucket[e];
+                    queued[g] = false;
+                    int output = gateOutputs[g];
+                    long result = evaluate(g, faulty);
+                    if (((result ^ good[output]) & valid) != 0) {
+                        mark(output, result);
+                        if (observed[output]) {
+                            patterns |= (result ^ good[output]) & valid;
+                        }
+                        scheduleFanouts(output);
+                    }
+                }
+                eventCounts[level] = 0;
+            }
+
+            if (errors != null) {
+                for (int i = 0; i < outputs.length; i++) {
+                    int output = outputs[i];
+                    errors[i] = changed[output] ? (faulty[output] ^ good[output]) & activation : 0L;
+                }
+            }
+            for (int t = 0; t < touchedCount; t++) {
+                changed[touched[t]] = false;
+                faulty[touched[t]] = 0L;
+            }
+            touchedCount = 0;
+            return patterns & activation;
+        }
+
+        private void mark(int net, long value) {
+
+            if (!changed[net]) {
+                changed[net] = true;
+                touched[touchedCount++] = net;
+            }
+            faulty[net] = value;
+        }
+
+        private void scheduleFanouts(int net) {
+
+            for (int p = fanoutOffsets[net]; p < fanoutOffsets[net + 1]; p++) {
+                int g = fanoutIndices[p];
+                if (!queued[g]) {
+                    queued[g] = true;
+                    events[levels[g]][eventCounts[levels[g]]++] = g;
+                }
+            }
+        }
+
+        private long evaluate(int g, long[] values) {
+
+            long value = 0L;
+            int first = faninOffsets[g];
+            int last = faninOffsets[g + 1];
+            switch (functions[g]) {
+                case Netlist.INV:
+                    value = ~read(faninIndices[first], values);
+                    break;
+                case Netlist.BUF:
+                    value = read(faninIndices[first], values);
+                    break;
+                case Netlist.AND:
+                case Netlist.NAND:
+                    value = -1L;
+                    for (int p = first; p < last; p++) {
+                        value &= read(faninIndices[p], values);
+                    }
+                    break;
+                case Netlist.OR:
+                case Netlist.NOR:
+                    value = 0L;
+                    for (int p = first; p < last; p++) {
+                        value |= read(faninIndices[p], values);
+                    }
+                    break;
+                case Netlist.XOR:
+                case Netlist.XNOR:
+                    value = 0L;
+                    for (int p = first; p < last; p++) {
+                        value ^= read(faninIndices[p], values);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported logic gate " + functions[g]);
+            }
+            switch (functions[g]) {
+                case Netlist.NAND:
+                case Netlist.NOR:
+                case Netlist.XNOR:
+                    return ~value;
+                default:
+                    return value;
+            }
+        }
+
+        private long read(int net, long[] values) {
+            return values == faulty && !changed[net] ? good[net] : values[net];
+        }
+    }
+}
@@ -1,20 +1,67 @@
-import java.util.LinkedList;
-import java.util.List;
-import java.util.ListIterator;
-import java.util.Random;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 import java.io.File;
 
 public class PartB {
 
     public static void main(String[] args) {
 
-        if (args.length != 1) {
-            System.out.println("Usage: java PartB <circuit_file.txt>");
+        long seed = System.nanoTime();
+        double target = 0.995;
+        long budget = 1L << 20;
+        long saturation = 0;
+        int threads = 1;
+        int detections = 1;
+        String collapse = null;
+        String circuit = null;
+        boolean valid = true;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "-coverage":
+                        target = Double.parseDouble(args[++i]);
+                        valid &= target > 0.0 && target <= 1.0;
+                        break;
+                    case "-patterns":
+                        budget = Long.parseLong(args[++i]);
+                        valid &= budget > 0;
+                        break;
+                    case "-saturation":
+                        saturation = Long.parseLong(args[++i]);
+                        valid &= saturation > 0;
+                        break;
+                    case "-threads":
+                        threads = Integer.parseInt(args[++i]);
+                        valid &= threads > 0 && threads <= 1024;
+                        break;
+                    case "-ndetect":
+                        detections = Integer.parseInt(args[++i]);
+                        valid &= detections > 0 && detections <= 15;
+                        break;
+                    case "-collapse":
+                        collapse = args[++i];
+                        valid &= collapse.equals("equivalence") || collapse.equals("dominance");
+                        break;
+                    default:
+                        valid &= circuit == null;
+                        circuit = args[i];
+                        break;
+                }
+            }
+        } catch (RuntimeException ex) {
+            valid = false;
+        }
+
+        if (!valid || circuit == null) {
+            System.out.println("Usage: java PartB [-seed <n>] [-coverage <fraction>] [-patterns <n>] [-saturation <n>]\n"
+                             + "                  [-threads <n>] [-ndetect <n>] [-collapse equivalence|dominance] <circuit_file.txt>");
             System.exit(0);
         }
 
-        File netListFile = new File(args[0]);
+        File netListFile = new File(circuit);
         if (!netListFile.exists()) {
             System.out.println("Error: Could not find the net list file");
             System.exit(0);
@@ -23,38 +70,129 @@ public class PartB {
         try {
 
             FaultSimulator simulator = new FaultSimulator(netListFile);
-            List<FaultSimulator.Fault> faults = new LinkedList<>(simulator.getFaultList());
-            double total = faults.size();
+            if (collapse != null) {
+                simulator.collapse(collapse.equals("dominance"));
+            }
+            ParallelPatternSimulator parallel =
+                new ParallelPatternSimulator(simulator.getNetlist(), simulator.getFaultList());
+            parallel.setThreads(threads);
+            parallel.setDetectionLimit(detections);
+            int[] sizes = simulator.getFaultClassSizes();
+            double total = simulator.getFullFaultList().size();
+
+            int width = simulator.getNumberOfInputs();
+            boolean exhaustive = width < Long.SIZE - 1 && budget >= 1L << width;
+            if (exhaustive) {
+                budget = 1L << width;
+            }
+            SplittableRandom random = new SplittableRandom(seed);
+            long offset = random.nextLong();
+            long first = random.nextLong() | 1;
+            long second = random.nextLong() | 1;
+            long[] inputWords = new long[width];
+            long[] values = new long[Long.SIZE];
+            int[] firstDetections = new int[Long.SIZE];
+
+            long applied = 0;
+            long lastDetection = 0;
+            int detected = 0;
             double coverage = 0.0;
-            Random rand = new Random();
-            int bound = 1 << (simulator.getNumberOfInputs());
-            Iterator<Integer> iterator = rand.ints(0, bound).distinct().iterator();
-            while(iterator.hasNext()) {
-                int i = iterator.next();
-                String inputVector = Integer.toBinaryString(i);
-                StringBuilder builder = new StringBuilder(inputVector);
-                while (builder.length() < simulator.getNumberOfInputs()) {
-                    builder.insert(0, '0');
-                }
-                simulator.initialize(builder.toString());
-                simulator.run();
-                List<FaultSimulator.Fault> detected = simulator.getDetectedFaults();
-                for (FaultSimulator.Fault fault : detected) {
-                    if (faults.contains(fault)) {
-                        faults.remove(fault);
+            String reason = exhaustive ? "all input vectors applied" : "pattern budget reached";
+            while (applied < budget) {
+                int count = (int) Math.min(Long.SIZE, budget - applied);
+                if (width < Long.SIZE) {
+                    for (int k = 0; k < count; k++) {
+                        values[k] = permute(applied + k, width, offset, first, second);
+                    }
+                    for (int i = 0; i < width; i++) {
+                        long word = 0L;
+                        for (int k = 0; k < count; k++) {
+                            word |= (values[k] >>> (width - 1 - i) & 1) << k;
+                        }
+                        inputWords[i] = word;
+                    }
+                } else {
+                    for (int i = 0; i < width; i++) {
+                        inputWords[i] = random.nextLong();
+                    }
+                }
+                parallel.initialize(inputWords, count);
+                parallel.run();
+
+                Arrays.fill(firstDetections, 0);
+                for (int f = 0; f < sizes.length; f++) {
+                    long completions = parallel.getCompletions(f);
+                    if (completions != 0) {
+                        firstDetections[Long.numberOfTrailingZeros(completions)] += sizes[f];
+                    }
+                }
+                int k = 0;
+                for (; k < count; k++) {
+                    applied++;
+                    if (firstDetections[k] > 0) {
+                        detected += firstDetections[k];
+                        coverage = detected / total;
+                        lastDetection = applied;
+                        System.out.println(getVector(inputWords, k) + ",\t" + coverage);
+                    }
+                    if (coverage >= target) {
+                        reason = "target coverage reached";
+                        break;
+                    }
+                    if (saturation > 0 && applied - lastDetection >= saturation) {
+                        reason = "no new detections in " + saturation + " patterns";
+                        break;
                     }
                 }
-                coverage = 1.0 - (faults.size() / total);
-                System.out.println(builder.toString() + ",\t" + coverage);
-                if (coverage > 0.995) {
+                if (k < count) {
+                    parallel.truncate(k + 1);
                     break;
                 }
             }
 
+            System.out.println();
+            System.out.println("Patterns applied: " + applied);
+            System.out.println("Fault coverage: " + coverage);
+            if (detections > 1) {
+                int[] levels = new int[detections + 1];
+                for (int f = 0; f < sizes.length; f++) {
+                    levels[Math.min(detections, parallel.getDetectionCount(f))] += sizes[f];
+                }
+                for (int n = detections - 1; n > 0; n--) {
+                    levels[n] += levels[n + 1];
+                }
+                for (int n = 1; n <= detections; n++) {
+                    System.out.println("Fault coverage (" + n + "-detect): " + levels[n] / total);
+                }
+            }
+            System.out.println("Stopped: " + reason);
+            System.out.println("Seed: " + seed);
+
         } catch (Exception ex) {
 
             System.out.println("Error: Unexpected input format");
             System.exit(0);
         }
     }
-}
\ No newline at end of file
+
+    private static long permute(long index, int width, long offset, long first, long second) {
+
+        long mask = width == Long.SIZE ? -1L : (1L << width) - 1;
+        int shift = Math.max(1, width / 2);
+        long value = (index + offset) & mask;
+        value = (value * first) & mask;
+        value ^= value >>> shift;
+        value = (value * second) & mask;
+        value ^= value >>> shift;
+        return value;
+    }
+
+    private static String getVector(long[] inputWords, int pattern) {
+
+        char[] vector = new char[inputWords.length];
+        for (int i = 0; i < inputWords.length; i++) {
+            vector[i] = (inputWords[i] >>> pattern & 1) == 0 ? '0' : '1';
+        }
+        return new String(vector);
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.io.File;
+import java.io.FileReader;
+import java.io.BufferedReader;
+
+public class TransitionFaultSimulator {
+
+    public static void main(String[] args) {
+
+        int threads = 1;
+        boolean list = false;
+        List<String> operands = new ArrayList<>();
+        boolean valid = true;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                    valid &= threads > 0 && threads <= 1024;
+                } else if (args[i].equals("-list")) {
+                    list = true;
+                } else {
+                    operands.add(args[i]);
+                }
+            }
+        } catch (NumberFormatException ex) {
+            valid = false;
+        }
+
+        if (!valid || operands.size() < 2 || operands.size() > 3) {
+            System.out.println("Usage: java TransitionFaultSimulator [-threads <n>] [-list] <circuit_file.txt> [<fault_file.txt>] <pair_file.txt>");
+            System.exit(0);
+        }
+
+        File netListFile = new File(operands.get(0));
+        File faultListFile = operands.size() == 3 ? new File(operands.get(1)) : null;
+        File pairFile = new File(operands.get(operands.size() - 1));
+        if (!netListFile.exists() || (faultListFile != null && !faultListFile.exists())) {
+            System.out.println("Error: Could not find the net list or fault list file");
+            System.exit(0);
+        }
+        if (!pairFile.exists()) {
+            System.out.println("Error: Could not find the pair file");
+            System.exit(0);
+        }
+
+        try {
+
+            FaultSimulator simulator = faultListFile == null
+                ? new FaultSimulator(netListFile)
+                : new FaultSimulator(netListFile, faultListFile);
+            List<FaultSimulator.Fault> faults = simulator.getFaultList();
+            ParallelPatternSimulator parallel = new ParallelPatternSimulator(simulator.getNetlist(), faults);
+            parallel.setThreads(threads);
+            parallel.setFaultDropping(!list);
+
+            List<String> launch = new ArrayList<>();
+            List<String> capture = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new FileReader(pairFile))) {
+                String line = reader.readLine();
+                while (line != null) {
+                    String[] tokens = line.trim().split("\\s+");
+                    if (tokens.length == 2) {
+                        launch.add(tokens[0]);
+                        capture.add(tokens[1]);
+                    } else if (!line.trim().isEmpty()) {
+                        throw new IllegalArgumentException("Expected a launch and a capture vector: " + line);
+                    }
+                    line = reader.readLine();
+                }
+            }
+
+            String[] launchVectors = launch.toArray(new String[0]);
+            String[] captureVectors = capture.toArray(new String[0]);
+            int[] firstDetections = new int[Long.SIZE];
+            int detected = 0;
+            for (int offset = 0; offset < launchVectors.length; offset += Long.SIZE) {
+                int count = Math.min(Long.SIZE, launchVectors.length - offset);
+                parallel.initialize(launchVectors, captureVectors, offset, count);
+                parallel.run();
+
+                if (list) {
+                    for (int k = 0; k < count; k++) {
+                        System.out.println("pair\t" + launchVectors[offset + k] + " " + captureVectors[offset + k]);
+                        printFaults(parallel.getDetectedFaults(k));
+                    }
+                    continue;
+                }
+                for (int k = 0; k < count; k++) {
+                    firstDetections[k] = 0;
+                }
+                for (int f = 0; f < faults.size(); f++) {
+                    long detections = parallel.getDetections(f);
+                    if (detections != 0) {
+                        firstDetections[Long.numberOfTrailingZeros(detections)]++;
+                    }
+                }
+                for (int k = 0; k < count; k++) {
+                    if (firstDetections[k] > 0) {
+                        detected += firstDetections[k];
+                        System.out.println(launchVectors[offset + k] + " " + captureVectors[offset + k] + ",\t"
+                                         + (double) detected / faults.size());
+                    }
+                }
+            }
+
+            if (!list) {
+                System.out.println();
+                System.out.println("Pairs applied: " + launchVectors.length);
+                System.out.println("Transition fault coverage: " + (double) detected / faults.size());
+            }
+
+        } catch (Exception ex) {
+
+            System.out.println("Error: Unexpected input format");
+            System.exit(0);
+        }
+    }
+
+    private static void printFaults(List<FaultSimulator.Fault> faults) {
+
+        for (FaultSimulator.Fault fault : faults) {
+            System.out.println("net\t" + (fault.getNet() + 1) + "\t" + (fault.getValue() == 0 ? "slow-to-rise" : "slow-to-fall"));
+        }
+        System.out.println();
+        System.out.println("Total faults detected: " + faults.size());
+        System.out.println();
+    }
+}
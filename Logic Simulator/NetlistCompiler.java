@@ -0,0 +1,304 @@
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Consumer;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+public class NetlistCompiler {
+
+    private static final String VERSION = "4";
+    private static final int METHOD_SIZE = 2000;
+    private static final int LOCAL_SIZE = 4;
+    private static final int CONSTANT_SIZE = 3;
+    private static final int LOAD_SIZE = 9;
+    private static final int STORE_SIZE = 9;
+    private static final Map<String, Consumer<long[]>> loaded = new HashMap<>();
+
+    private int[] functions;
+    private long[] tables;
+    private int[] faninOffsets;
+    private int[] faninIndices;
+    private int[] outputs;
+    private String hash;
+
+    public NetlistCompiler(Netlist netlist) throws Exception {
+
+        this.functions = netlist.getFunctions();
+        this.tables = netlist.getTables();
+        this.faninOffsets = netlist.getFaninOffsets();
+        this.faninIndices = netlist.getFaninIndices();
+        this.outputs = netlist.getGateOutputs();
+        this.hash = computeHash();
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public Consumer<long[]> compile() {
+
+        synchronized (loaded) {
+            Consumer<long[]> kernel = loaded.get(hash);
+            if (kernel == null) {
+                try {
+                    kernel = load();
+                } catch (Exception ex) {
+                    return null;
+                }
+                if (kernel != null) {
+                    loaded.put(hash, kernel);
+                }
+            }
+            return kernel;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Consumer<long[]> load() throws Exception {
+
+        String className = "CompiledNetlist_" + hash;
+        Path directory = Netlist.openCache("simulator.cache", "simulator-cache");
+        Path classFile = directory != null ? directory.resolve(className + ".class") : null;
+
+        byte[] bytes;
+        if (classFile != null && Files.exists(classFile, LinkOption.NOFOLLOW_LINKS) && Netlist.isPrivate(classFile)) {
+            bytes = Files.readAllBytes(classFile);
+        } else {
+            bytes = compileSource(className);
+            if (bytes == null) {
+                return null;
+            }
+            if (directory != null) {
+                Path temp = Files.createTempFile(directory, className, ".tmp");
+                try {
+                    Files.write(temp, bytes);
+                    Files.move(temp, classFile, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+
+        Class<?> type = new Loader(NetlistCompiler.class.getClassLoader()).define(className, bytes);
+        return (Consumer<long[]>) type.getDeclaredConstructor().newInstance();
+    }
+
+    private byte[] compileSource(String className) throws Exception {
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            return null;
+        }
+        JavaFileObject source = new SimpleJavaFileObject(
+            URI.create("string:///" + className + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return generate(className);
+            }
+        };
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JavaFileManager manager = new ForwardingJavaFileManager<JavaFileManager>(
+                compiler.getStandardFileManager(null, null, null)) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String name, JavaFileObject.Kind kind,
+                                                       FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("bytes:///" + name + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return output;
+                    }
+                };
+            }
+        }) {
+            boolean success = compiler.getTask(null, manager, null, Arrays.asList("-nowarn", "-g:none"), null,
+                Collections.singletonList(source)).call();
+            return success ? output.toByteArray() : null;
+        }
+    }
+
+    private String generate(String className) {
+
+        StringBuilder methods = new StringBuilder();
+        int numberOfMethods = 0;
+        int g = 0;
+        while (g < functions.length) {
+            int first = g;
+            int size = 0;
+            Set<Integer> locals = new HashSet<>();
+            methods.append("\n    private static void m").append(numberOfMethods++).append("(long[] w) {\n");
+            while (g < functions.length) {
+                int[] in = Arrays.copyOfRange(faninIndices, faninOffsets[g], faninOffsets[g + 1]);
+                String expression = expression(g, in);
+                int cost = estimate(expression) + LOCAL_SIZE + STORE_SIZE;
+                for (int input : in) {
+                    if (!locals.contains(input)) {
+                        cost += LOAD_SIZE;
+                    }
+                }
+                if (size > 0 && size + cost > METHOD_SIZE) {
+                    break;
+                }
+                for (int input : in) {
+                    if (locals.add(input)) {
+                        methods.append("        final long n").append(input)
+                               .append(" = w[").append(input).append("];\n");
+                    }
+                }
+                methods.append("        final long n").append(outputs[g]).append(" = ")
+                       .append(expression).append(";\n");
+                locals.add(outputs[g]);
+                size += cost;
+                g++;
+            }
+            for (int h = first; h < g; h++) {
+                methods.append("        w[").append(outputs[h]).append("] = n").append(outputs[h]).append(";\n");
+            }
+            methods.append("    }\n");
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("public final class ").append(className)
+               .append(" implements java.util.function.Consumer<long[]> {\n\n");
+        builder.append("    public void accept(long[] w) {\n");
+        for (int m = 0; m < numberOfMethods; m++) {
+            builder.append("        m").append(m).append("(w);\n");
+        }
+        builder.append("    }\n");
+        builder.append(methods);
+        builder.append("}\n");
+        return builder.toString();
+    }
+
+    private static int estimate(String expression) {
+
+        int size = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            switch (expression.charAt(i)) {
+                case 'n':
+                    size += LOCAL_SIZE;
+                    break;
+                case '~':
+                    size += CONSTANT_SIZE + 1;
+                    break;
+                case 'L':
+                    size += CONSTANT_SIZE;
+                    break;
+                case '&':
+                case '|':
+                case '^':
+                    size++;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return size;
+    }
+
+    private String expression(int g, int[] in) {
+
+        switch (functions[g]) {
+            case Netlist.INV:   return "~n" + in[0];
+            case Netlist.BUF:   return "n" + in[0];
+            case Netlist.AND:   return join(in, " & ");
+            case Netlist.OR:    return join(in, " | ");
+            case Netlist.NAND:  return "~(" + join(in, " & ") + ")";
+            case Netlist.NOR:   return "~(" + join(in, " | ") + ")";
+            case Netlist.XOR:   return join(in, " ^ ");
+            case Netlist.XNOR:  return "~(" + join(in, " ^ ") + ")";
+            case Netlist.LUT:   return lookup(tables[g], in);
+            default:            throw new IllegalArgumentException("Unsupported logic gate " + functions[g]);
+        }
+    }
+
+    private String lookup(long table, int[] in) {
+
+        String[] cofactors = new String[1 << in.length];
+        for (int j = 0; j < cofactors.length; j++) {
+            cofactors[j] = (table >>> j & 1) == 0 ? "0L" : "-1L";
+        }
+        int size = cofactors.length;
+        for (int input : in) {
+            String select = "n" + input;
+            size >>= 1;
+            for (int j = 0; j < size; j++) {
+                String low = cofactors[2 * j];
+                String high = cofactors[2 * j + 1];
+                if (low.equals(high)) {
+                    cofactors[j] = low;
+                } else if (low.equals("0L") && high.equals("-1L")) {
+                    cofactors[j] = select;
+                } else if (low.equals("-1L") && high.equals("0L")) {
+                    cofactors[j] = "~" + select;
+                } else {
+                    cofactors[j] = "(" + select + " & " + high + " | ~" + select + " & " + low + ")";
+                }
+            }
+        }
+        return cofactors[0];
+    }
+
+    private String join(int[] in, String operator) {
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < in.length; i++) {
+            if (i > 0) {
+                builder.append(operator);
+            }
+            builder.append('n').append(in[i]);
+        }
+        return builder.toString();
+    }
+
+    private String computeHash() throws Exception {
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        StringBuilder builder = new StringBuilder(VERSION);
+        for (int g = 0; g < functions.length; g++) {
+            builder.append('\n').append(functions[g]);
+            for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+                builder.append(' ').append(faninIndices[p]);
+            }
+            builder.append(' ').append(outputs[g]);
+            if (tables != null) {
+                builder.append(' ').append(tables[g]);
+            }
+        }
+        byte[] bytes = digest.digest(builder.toString().getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            hex.append(String.format("%02x", bytes[i]));
+        }
+        return hex.toString();
+    }
+
+
+    private static class Loader extends ClassLoader {
+
+        private Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
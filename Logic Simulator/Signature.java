@@ -0,0 +1,63 @@
+public class Signature {
+
+    public static final int MAX_WIDTH = Long.SIZE;
+
+    private static final int[] DEFAULT_WIDTHS = { 8, 16, 24, 32, 64 };
+    private static final long[] DEFAULT_POLYNOMIALS = { 0x1DL, 0x2DL, 0x87L, 0x400007L, 0x1BL };
+
+    private int width;
+    private long polynomial;
+    private long mask;
+    private long state;
+    private long count;
+
+    public Signature(int width, long polynomial) {
+
+        if (width < 1 || width > MAX_WIDTH) {
+            throw new IllegalArgumentException("Signature width must be from 1 to " + MAX_WIDTH);
+        }
+        this.width = width;
+        this.mask = width == MAX_WIDTH ? -1L : (1L << width) - 1;
+        this.polynomial = polynomial & mask;
+    }
+
+    public static long getDefaultPolynomial(int width) {
+
+        for (int i = 0; i < DEFAULT_WIDTHS.length; i++) {
+            if (DEFAULT_WIDTHS[i] == width) {
+                return DEFAULT_POLYNOMIALS[i];
+            }
+        }
+        return 0L;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public void clock(long response) {
+
+        long feedback = (state >>> (width - 1) & 1) == 0 ? 0L : polynomial;
+        state = ((state << 1) ^ feedback ^ response) & mask;
+        count++;
+    }
+
+    @Override
+    public String toString() {
+
+        String hex = Long.toHexString(state);
+        StringBuilder builder = new StringBuilder();
+        for (int i = hex.length(); i < (width + 3) / 4; i++) {
+            builder.append('0');
+        }
+        return builder.append(hex).toString();
+    }
+}
@@ -1,34 +1,119 @@
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.ArrayDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.io.File;
 import java.io.FileReader;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.io.CharArrayWriter;
+import java.io.IOException;
 
 public class Simulator {
 
     public static void main(String[] args) {
 
-        if (args.length < 2) {
-            System.out.println("Usage: java Simulator <file.txt> <input_vector>");
+        String mode = null;
+        boolean compiled = false;
+        int lutSize = 0;
+        int threads = 1;
+        int lanes = 1;
+        int width = 0;
+        String polynomial = null;
+        long checkpoint = 0L;
+        List<String> operands = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-batch":
+                case "-sequence":
+                    mode = args[i];
+                    break;
+                case "-compiled":
+                    compiled = true;
+                    break;
+                case "-collapse":
+                    lutSize = i + 1 < args.length ? parseOption(args[++i], 1, Netlist.MAX_LUT_INPUTS) : -1;
+                    break;
+                case "-threads":
+                    threads = i + 1 < args.length ? parseOption(args[++i], 1, MAX_THREADS) : -1;
+                    break;
+                case "-lanes":
+                    lanes = i + 1 < args.length ? parseOption(args[++i], 1, MAX_LANES) : -1;
+                    break;
+                case "-misr":
+                    width = i + 1 < args.length ? parseOption(args[++i], 1, Signature.MAX_WIDTH) : -1;
+                    break;
+                case "-polynomial":
+                    polynomial = i + 1 < args.length ? args[++i] : "";
+                    break;
+                case "-checkpoint":
+                    checkpoint = i + 1 < args.length ? parseOption(args[++i], 1, Integer.MAX_VALUE) : -1;
+                    break;
+                default:
+                    operands.add(args[i]);
+                    break;
+            }
+        }
+
+        long feedback = polynomial != null ? parsePolynomial(polynomial) : Signature.getDefaultPolynomial(width);
+
+        if (operands.isEmpty() || lutSize < 0 || threads < 0 || lanes < 0 || width < 0 || checkpoint < 0
+                || (width > 0 && feedback == 0L) || (width > 0 && width < Signature.MAX_WIDTH && feedback >>> width != 0L)
+                || (width == 0 && (polynomial != null || checkpoint != 0L))
+                || (mode == null && (operands.size() != 2 || width != 0))
+                || (mode != null && operands.size() > 2)) {
+            System.out.println("Usage: java Simulator [-collapse <k>] [-threads <n>] <file.txt> <input_vector>\n"
+                             + "       java Simulator [-collapse <k>] <file.txt> -batch [-compiled] [-threads <n>] [-lanes <n>] [<misr>] [<vector_file.txt>]\n"
+                             + "       java Simulator [-collapse <k>] <file.txt> -sequence [<misr>] [<vector_file.txt>]\n"
+                             + "where <misr> is -misr <width> [-polynomial <hex>] [-checkpoint <n>]");
             System.exit(0);
         }
 
-        File netListFile = new File(args[0]);
+        File netListFile = new File(operands.get(0));
         if (!netListFile.exists()) {
             System.out.println("Error: Could not find the file");
             System.exit(0);
         }
 
-        String inputVector = args[1];
+        if (mode != null) {
+            File vectorFile = operands.size() > 1 ? new File(operands.get(1)) : null;
+            if (vectorFile != null && !vectorFile.exists()) {
+                System.out.println("Error: Could not find the vector file");
+                System.exit(0);
+            }
+            Signature signature = width > 0 ? new Signature(width, feedback) : null;
+            runBatch(netListFile, vectorFile, mode.equals("-sequence"), compiled, lutSize, threads, lanes,
+                     signature, checkpoint);
+            return;
+        }
+
+        String inputVector = operands.get(1);
 
         try {
 
-            Simulator simulator = new Simulator(netListFile);
-            simulator.initialize(inputVector);
-            simulator.run();
-            simulator.printOutputs();
+            Simulator simulator = create(netListFile, lutSize);
+            simulator.setLevelThreads(threads);
+            if (isBinary(inputVector)) {
+                simulator.initialize(inputVector);
+                simulator.run();
+                simulator.printOutputs();
+            } else {
+                simulator.initializeThreeValued(new String[] { inputVector }, 0, 1);
+                simulator.runThreeValued();
+                System.out.println(simulator.getThreeValuedOutputVector(0));
+            }
 
         } catch (Exception ex) {
 
@@ -37,35 +122,106 @@ public class Simulator {
         }
     }
 
-    private class Gate {
-
-        private String function;
-        private int[] inputs;
-        private int output;
+    private static int parseOption(String value, int min, int max) {
 
-        public Gate(String function, int[] inputs, int output) {
-            this.function = function;
-            this.inputs = inputs;
-            this.output = output;
+        try {
+            int option = Integer.parseInt(value);
+            return option < min || option > max ? -1 : option;
+        } catch (NumberFormatException ex) {
+            return -1;
         }
+    }
 
-        public String getFunction() {
-            return function;
-        }
+    private static long parsePolynomial(String value) {
 
-        public int[] getInputs() {
-            return inputs;
+        try {
+            String digits = value.startsWith("0x") || value.startsWith("0X") ? value.substring(2) : value;
+            return Long.parseUnsignedLong(digits, 16);
+        } catch (NumberFormatException ex) {
+            return 0L;
         }
+    }
+
+    private static Simulator create(File netListFile, int lutSize) throws Exception {
+
+        Netlist netlist = Netlist.load(netListFile);
+        return new Simulator(lutSize > 0 ? netlist.collapse(lutSize) : netlist, netlist);
+    }
+
+    private static void runBatch(File netListFile, File vectorFile, boolean sequence, boolean compiled,
+                                 int lutSize, int threads, int lanes, Signature signature, long checkpoint) {
 
-        public int getOutput() {
-            return output;
+        try {
+
+            Simulator simulator = create(netListFile, lutSize);
+            if (compiled) {
+                simulator.compile();
+            }
+            simulator.setThreads(threads);
+            simulator.setLanes(lanes);
+            simulator.setSignature(signature, checkpoint);
+            BufferedReader reader = vectorFile == null
+                ? new BufferedReader(new InputStreamReader(System.in), BUFFER_SIZE)
+                : new BufferedReader(new FileReader(vectorFile), BUFFER_SIZE);
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(System.out), BUFFER_SIZE);
+            if (sequence) {
+                simulator.runSequence(reader, writer);
+            } else {
+                simulator.run(reader, writer);
+            }
+            writer.flush();
+            reader.close();
+
+        } catch (Exception ex) {
+
+            System.out.println("Error: Unexpected input format");
+            System.exit(0);
         }
     }
 
-    private List<Gate> gates = new LinkedList<>();
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int SHARD_SIZE = 16 * Long.SIZE;
+    private static final int MAX_THREADS = 1024;
+    private static final int MIN_CHUNK_PINS = 1024;
+    private static final int MAX_LANES = 16;
+    private static final String NEWLINE = System.lineSeparator();
+
+    private Netlist netlist;
+    private Netlist threeValuedNetlist;
+    private int[] functions;
+    private long[] tables;
+    private long[] cofactors = new long[1 << Netlist.MAX_LUT_INPUTS];
+    private int[] faninOffsets;
+    private int[] faninIndices;
+    private int[] gateOutputs;
+    private int[] levels;
+    private int[] fanoutOffsets;
+    private int[] fanoutIndices;
+    private int[][] events;
+    private int[] eventCounts;
+    private boolean[] queued;
+    private boolean settled;
+    private Consumer<long[]> kernel;
+    private int threads = 1;
+    private int[][] levelChunks;
+    private long[][] chunkCofactors;
+    private ForkJoinPool pool;
     private int[] nets;
+    private long[] words;
+    private long[] wide;
+    private long[] accumulator;
+    private long[] ones;
+    private long[] zeros;
+    private int lanes = 1;
+    private Signature signature;
+    private long checkpoint;
+    private int patterns;
     private int[] inputs;
     private int[] outputs;
+    private int[] threeValuedFunctions;
+    private int[] threeValuedFaninOffsets;
+    private int[] threeValuedFaninIndices;
+    private int[] threeValuedGateOutputs;
 
     public Simulator(File netListFile) throws Exception {
 
@@ -74,24 +230,53 @@ public class Simulator {
 
     public Simulator(File netListFile, String inputVector) throws Exception {
 
-        BufferedReader reader = new BufferedReader(new FileReader(netListFile));
-        String line = reader.readLine();
-        int numberOfNets = 0;
+        this(Netlist.load(netListFile));
+        initialize(inputVector);
+    }
 
-        while (line != null) {
-            int net = parseLine(line);
-            if (net > numberOfNets) {
-                numberOfNets = net;
-            }
-            line = reader.readLine();
+    public Simulator(Netlist netlist) {
+
+        this(netlist, netlist);
+    }
+
+    public Simulator(Netlist netlist, Netlist threeValuedNetlist) {
+
+        this.netlist = netlist;
+        this.threeValuedNetlist = threeValuedNetlist;
+        functions = netlist.getFunctions();
+        tables = netlist.getTables();
+        faninOffsets = netlist.getFaninOffsets();
+        faninIndices = netlist.getFaninIndices();
+        gateOutputs = netlist.getGateOutputs();
+        levels = netlist.getLevels();
+        fanoutOffsets = netlist.getFanoutOffsets();
+        fanoutIndices = netlist.getFanoutIndices();
+        inputs = netlist.getInputs();
+        outputs = netlist.getOutputs();
+        nets = new int[netlist.getNumberOfNets()];
+        words = new long[netlist.getNumberOfNets()];
+        ones = new long[netlist.getNumberOfNets()];
+        zeros = new long[netlist.getNumberOfNets()];
+
+        int[] levelOffsets = netlist.getLevelOffsets();
+        events = new int[netlist.getNumberOfLevels()][];
+        for (int l = 0; l < events.length; l++) {
+            events[l] = new int[levelOffsets[l + 1] - levelOffsets[l]];
         }
+        eventCounts = new int[events.length];
+        queued = new boolean[functions.length];
+        Arrays.fill(nets, -1);
 
-        nets = new int[numberOfNets];
-        initialize(inputVector);
+        threeValuedFunctions = threeValuedNetlist.getFunctions();
+        threeValuedFaninOffsets = threeValuedNetlist.getFaninOffsets();
+        threeValuedFaninIndices = threeValuedNetlist.getFaninIndices();
+        threeValuedGateOutputs = threeValuedNetlist.getGateOutputs();
     }
 
     public void initialize(String inputVector) {
 
+        checkLength(inputVector);
+        settled = false;
         Arrays.fill(nets, -1);
         for (int i = 0; i < inputVector.length(); i++) {
             nets[inputs[i]] = Character.getNumericValue(inputVector.charAt(i));
@@ -100,155 +285,845 @@ public class Simulator {
 
     public void run() {
 
-        while (!gates.isEmpty()) {
-            ListIterator<Gate> iterator = gates.listIterator();
-            while (iterator.hasNext()) {
-                Gate gate = iterator.next();
-                if (isGateReady(gate)) {
-                    evaluateFunction(gate);
-                    iterator.remove();
+        if (pool != null) {
+            runLevels(false);
+        } else {
+            for (int g = 0; g < functions.length; g++) {
+                evaluateFunction(g);
+            }
+        }
+        settled = true;
+    }
+
+    public void update(String inputVector) {
+
+        if (!settled) {
+            initialize(inputVector);
+            run();
+            return;
+        }
+
+        checkLength(inputVector);
+        for (int i = 0; i < inputVector.length(); i++) {
+            int value = Character.getNumericValue(inputVector.charAt(i));
+            if (nets[inputs[i]] != value) {
+                nets[inputs[i]] = value;
+                scheduleFanouts(inputs[i]);
+            }
+        }
+
+        for (int level = 0; level < events.length; level++) {
+            int[] bucket = events[level];
+            for (int e = 0; e < eventCounts[level]; e++) {
+                int g = bucket[e];
+                queued[g] = false;
+                int value = nets[gateOutputs[g]];
+                evaluateFunction(g);
+                if (nets[gateOutputs[g]] != value) {
+                    scheduleFanouts(gateOutputs[g]);
                 }
             }
+            eventCounts[level] = 0;
         }
     }
 
-    public void printOutputs() {
+    public void runSequence(BufferedReader reader, BufferedWriter writer) throws IOException {
 
-        for (int i = 0; i < outputs.length; i++) {
-            System.out.print(nets[outputs[i]]);
+        char[] vector = new char[outputs.length];
+        long[] response = new long[1];
+        String line = reader.readLine();
+
+        while (line != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                line = reader.readLine();
+                continue;
+            }
+            if (isBinary(line)) {
+                update(line);
+                if (signature != null) {
+                    response[0] = 0L;
+                    for (int i = 0; i < outputs.length; i++) {
+                        response[0] ^= (long) nets[outputs[i]] << (i % signature.getWidth());
+                    }
+                    absorb(response, 1, writer);
+                } else {
+                    for (int i = 0; i < outputs.length; i++) {
+                        vector[i] = (char) ('0' + nets[outputs[i]]);
+                    }
+                    writer.write(vector);
+                    writer.newLine();
+                }
+            } else {
+                settled = false;
+                initializeThreeValued(new String[] { line }, 0, 1);
+                runThreeValued();
+                if (signature != null) {
+                    compactThreeValued(response, 0, 1);
+                    absorb(response, 1, writer);
+                } else {
+                    writer.write(getThreeValuedOutputVector(0));
+                    writer.newLine();
+                }
+            }
+            line = reader.readLine();
         }
-        System.out.println();
+        finish(writer);
     }
 
-    private int parseLine(String line) {
+    private void scheduleFanouts(int net) {
 
-        int net = 0;
-        String[] tokens = line.split("\\s+");
-        if (tokens.length > 2) {
-            String function = parseFunction(tokens);
-            int[] in = parseInputs(tokens);
-            int out = parseOutput(tokens);
-            initializeGate(tokens, function, in, out);
-            net = getNumberOfNets(in, out);
+        for (int p = fanoutOffsets[net]; p < fanoutOffsets[net + 1]; p++) {
+            int g = fanoutIndices[p];
+            if (!queued[g]) {
+                queued[g] = true;
+                events[levels[g]][eventCounts[levels[g]]++] = g;
+            }
         }
-        return net;
     }
 
-    private String parseFunction(String[] tokens) {
+    public void initialize(String[] inputVectors) {
 
-        return tokens[0];
+        initialize(inputVectors, 0, inputVectors.length);
     }
 
-    private int[] parseInputs(String[] tokens) {
+    public void initialize(String[] inputVectors, int offset, int count) {
 
-        int[] in = new int[tokens.length - 2];
-        for (int i = 1; i < tokens.length - 1; i++) {
-            int net = Integer.parseInt(tokens[i]);
-            in[i - 1] = net - 1;
+        if (count > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " input vectors can be simulated at once");
         }
-        return in;
+        Arrays.fill(words, 0L);
+        for (int k = 0; k < count; k++) {
+            String inputVector = inputVectors[offset + k];
+            checkLength(inputVector);
+            for (int i = 0; i < inputVector.length(); i++) {
+                long value = Character.getNumericValue(inputVector.charAt(i)) & 1;
+                words[inputs[i]] |= value << k;
+            }
+        }
+        patterns = count;
     }
 
-    private int parseOutput(String[] tokens) {
+    public void runParallel() {
 
-        return Integer.parseInt(tokens[tokens.length - 1]) - 1;
+        if (kernel != null) {
+            kernel.accept(words);
+        } else if (pool != null) {
+            runLevels(true);
+        } else {
+            for (int g = 0; g < functions.length; g++) {
+                evaluateParallel(g, cofactors);
+            }
+        }
     }
 
-    private void initializeGate(String[] tokens, String function, int[] in, int out) {
+    private void runLevels(boolean parallel) {
 
-        switch (function) {
-            case "INPUT":
-                inputs = new int[tokens.length - 2];
-                for (int i = 1; i < tokens.length - 1; i++) {
-                    inputs[i - 1] = Integer.parseInt(tokens[i]) - 1;
+        int[] levelOffsets = netlist.getLevelOffsets();
+        for (int l = 0; l < levelChunks.length; l++) {
+            int[] bounds = levelChunks[l];
+            if (bounds == null) {
+                evaluateRange(levelOffsets[l], levelOffsets[l + 1], parallel, cofactors);
+                continue;
+            }
+            List<Callable<Void>> tasks = new ArrayList<>(bounds.length - 1);
+            for (int c = 0; c + 1 < bounds.length; c++) {
+                int first = bounds[c];
+                int last = bounds[c + 1];
+                long[] scratch = chunkCofactors[c];
+                tasks.add(() -> {
+                    evaluateRange(first, last, parallel, scratch);
+                    return null;
+                });
+            }
+            for (Future<Void> task : pool.invokeAll(tasks)) {
+                try {
+                    task.get();
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
                 }
-                break;
-            case "OUTPUT":
-                outputs = new int[tokens.length - 2];
-                for (int i = 1; i < tokens.length - 1; i++) {
-                    outputs[i - 1] = Integer.parseInt(tokens[i]) - 1;
+            }
+        }
+    }
+
+    private void evaluateRange(int first, int last, boolean parallel, long[] scratch) {
+
+        for (int g = first; g < last; g++) {
+            if (parallel) {
+                evaluateParallel(g, scratch);
+            } else {
+                evaluateFunction(g);
+            }
+        }
+    }
+
+    public boolean compile() throws Exception {
+
+        kernel = new NetlistCompiler(netlist).compile();
+        return kernel != null;
+    }
+
+    public void setThreads(int threads) {
+
+        this.threads = threads;
+    }
+
+    public void setLevelThreads(int threads) {
+
+        levelChunks = null;
+        chunkCofactors = null;
+        pool = null;
+        if (threads < 2) {
+            return;
+        }
+
+        int[] levelOffsets = netlist.getLevelOffsets();
+        levelChunks = new int[levelOffsets.length - 1][];
+        boolean wide = false;
+        for (int l = 0; l < levelChunks.length; l++) {
+            int first = levelOffsets[l];
+            int last = levelOffsets[l + 1];
+            int pins = faninOffsets[last] - faninOffsets[first];
+            int chunks = Math.min(threads, Math.min(last - first, pins / MIN_CHUNK_PINS));
+            if (chunks > 1) {
+                levelChunks[l] = new int[chunks + 1];
+                for (int c = 0; c <= chunks; c++) {
+                    levelChunks[l][c] = first + (int) ((long) (last - first) * c / chunks);
                 }
-                break;
-            default:
-                gates.add(new Gate(function, in, out));
-                break;
+                wide = true;
+            }
+        }
+        if (wide) {
+            chunkCofactors = new long[threads][cofactors.length];
+            pool = new ForkJoinPool(threads);
+        }
+    }
+
+    public void run(BufferedReader reader, BufferedWriter writer) throws Exception {
+
+        if (threads > 1) {
+            runSharded(reader, writer);
+            return;
+        }
+
+        String[] block = new String[Long.SIZE * lanes];
+        char[] vector = new char[outputs.length];
+        long[] responses = signature != null ? new long[block.length] : null;
+        int count = 0;
+        String line = reader.readLine();
+
+        while (line != null) {
+            line = line.trim();
+            if (!line.isEmpty()) {
+                block[count++] = line;
+                if (count == block.length) {
+                    runBlock(block, 0, count, vector, writer, responses);
+                    absorb(responses, count, writer);
+                    count = 0;
+                }
+            }
+            line = reader.readLine();
+        }
+        if (count > 0) {
+            runBlock(block, 0, count, vector, writer, responses);
+            absorb(responses, count, writer);
+        }
+        finish(writer);
+    }
+
+    public void setSignature(Signature signature, long checkpoint) {
+
+        this.signature = signature;
+        this.checkpoint = checkpoint;
+    }
+
+    private void absorb(long[] responses, int count, Writer writer) throws IOException {
+
+        if (signature == null) {
+            return;
+        }
+        for (int k = 0; k < count; k++) {
+            signature.clock(responses[k]);
+            if (checkpoint > 0 && signature.getCount() % checkpoint == 0) {
+                writer.write(signature.getCount() + " " + signature + NEWLINE);
+            }
+        }
+    }
+
+    private void finish(Writer writer) throws IOException {
+
+        if (signature != null && (signature.getCount() == 0 || checkpoint == 0 || signature.getCount() % checkpoint != 0)) {
+            writer.write(signature.getCount() + " " + signature + NEWLINE);
+        }
+    }
+
+    private void runSharded(BufferedReader reader, BufferedWriter writer) throws Exception {
+
+        BlockingQueue<Simulator> workers = new ArrayBlockingQueue<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Simulator worker = new Simulator(netlist, threeValuedNetlist);
+            worker.kernel = kernel;
+            worker.setLanes(lanes);
+            worker.signature = signature;
+            workers.add(worker);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<Object>> pending = new ArrayDeque<>();
+        try {
+            String[] shard = readShard(reader);
+            while (shard != null) {
+                String[] vectors = shard;
+                pending.add(executor.submit((Callable<Object>) () -> {
+                    Simulator worker = workers.take();
+                    try {
+                        return worker.runShard(vectors);
+                    } finally {
+                        workers.put(worker);
+                    }
+                }));
+                if (pending.size() >= 2 * threads) {
+                    drain(pending.poll().get(), writer);
+                }
+                shard = readShard(reader);
+            }
+            while (!pending.isEmpty()) {
+                drain(pending.poll().get(), writer);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        finish(writer);
+    }
+
+    private void drain(Object result, Writer writer) throws IOException {
+
+        if (result instanceof long[]) {
+            long[] responses = (long[]) result;
+            absorb(responses, responses.length, writer);
+        } else {
+            ((CharArrayWriter) result).writeTo(writer);
         }
     }
 
-    private int getNumberOfNets(int[] in, int out) {
+    private String[] readShard(BufferedReader reader) throws IOException {
 
-        int numberOfNets = out;
-        for (int i : in) {
-            if (i > numberOfNets) {
-                numberOfNets = i;
+        String[] shard = new String[SHARD_SIZE];
+        int count = 0;
+        String line = reader.readLine();
+        while (line != null) {
+            line = line.trim();
+            if (!line.isEmpty()) {
+                shard[count++] = line;
+                if (count == shard.length) {
+                    break;
+                }
             }
+            line = reader.readLine();
         }
-        return numberOfNets + 1;
+        return count == 0 ? null : Arrays.copyOf(shard, count);
     }
 
-    private boolean isGateReady(Gate gate) {
-        for (int input : gate.getInputs()) {
-            if (nets[input] == -1) {
+    private Object runShard(String[] shard) throws IOException {
+
+        long[] responses = signature != null ? new long[shard.length] : null;
+        CharArrayWriter writer = new CharArrayWriter(responses != null ? 0 : shard.length * (outputs.length + NEWLINE.length()));
+        char[] vector = new char[outputs.length];
+        int size = Long.SIZE * lanes;
+        for (int offset = 0; offset < shard.length; offset += size) {
+            runBlock(shard, offset, Math.min(size, shard.length - offset), vector, writer, responses);
+        }
+        return responses != null ? responses : writer;
+    }
+
+    private void runBlock(String[] block, int offset, int count, char[] vector, Writer writer,
+                          long[] responses) throws IOException {
+
+        boolean binary = true;
+        for (int k = offset; k < offset + count && binary; k++) {
+            binary = isBinary(block[k]);
+        }
+        if (!binary) {
+            for (int first = offset; first < offset + count; first += Long.SIZE) {
+                int size = Math.min(Long.SIZE, offset + count - first);
+                initializeThreeValued(block, first, size);
+                runThreeValued();
+                if (responses != null) {
+                    compactThreeValued(responses, first, size);
+                    continue;
+                }
+                for (int k = 0; k < size; k++) {
+                    writer.write(getThreeValuedOutputVector(k));
+                    writer.write(NEWLINE);
+                }
+            }
+            return;
+        }
+
+        if (lanes > 1) {
+            initializeWide(block, offset, count);
+            runWide();
+        } else {
+            initialize(block, offset, count);
+            runParallel();
+        }
+        if (responses != null) {
+            compact(responses, offset, count);
+            return;
+        }
+        for (int k = 0; k < count; k++) {
+            for (int i = 0; i < outputs.length; i++) {
+                long word = lanes > 1 ? wide[outputs[i] * lanes + (k >>> 6)] : words[outputs[i]];
+                vector[i] = (word >>> k & 1) == 0 ? '0' : '1';
+            }
+            writer.write(vector);
+            writer.write(NEWLINE);
+        }
+    }
+
+    private void compact(long[] responses, int offset, int count) {
+
+        Arrays.fill(responses, offset, offset + count, 0L);
+        int width = signature.getWidth();
+        for (int i = 0; i < outputs.length; i++) {
+            long bit = 1L << (i % width);
+            for (int l = 0; l << 6 < count; l++) {
+                long word = lanes > 1 ? wide[outputs[i] * lanes + l] : words[outputs[i]];
+                int valid = count - (l << 6);
+                if (valid < Long.SIZE) {
+                    word &= (1L << valid) - 1;
+                }
+                while (word != 0) {
+                    responses[offset + (l << 6) + Long.numberOfTrailingZeros(word)] ^= bit;
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    private void compactThreeValued(long[] responses, int offset, int count) {
+
+        long valid = count < Long.SIZE ? (1L << count) - 1 : -1L;
+        for (int i = 0; i < outputs.length; i++) {
+            if (((ones[outputs[i]] | zeros[outputs[i]]) & valid) != valid) {
+                throw new IllegalArgumentException("Unknown output values cannot be compacted into a signature");
+            }
+        }
+        Arrays.fill(responses, offset, offset + count, 0L);
+        int width = signature.getWidth();
+        for (int i = 0; i < outputs.length; i++) {
+            long bit = 1L << (i % width);
+            long word = ones[outputs[i]] & valid;
+            while (word != 0) {
+                responses[offset + Long.numberOfTrailingZeros(word)] ^= bit;
+                word &= word - 1;
+            }
+        }
+    }
+
+    private void checkLength(String inputVector) {
+
+        if (inputVector.length() != inputs.length) {
+            throw new IllegalArgumentException("Expected " + inputs.length + " input values: " + inputVector);
+        }
+    }
+
+    private static boolean isBinary(String inputVector) {
+
+        for (int i = 0; i < inputVector.length(); i++) {
+            char c = inputVector.charAt(i);
+            if (c != '0' && c != '1') {
                 return false;
             }
         }
         return true;
     }
 
-    private void evaluateFunction(Gate gate) {
+    public void initializeThreeValued(String[] inputVectors, int offset, int count) {
+
+        if (threeValuedNetlist.getTables() != null) {
+            throw new IllegalArgumentException("Three-valued vectors need the uncollapsed netlist");
+        }
+        if (count > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " input vectors can be simulated at once");
+        }
+        Arrays.fill(ones, 0L);
+        Arrays.fill(zeros, 0L);
+        for (int k = 0; k < count; k++) {
+            String inputVector = inputVectors[offset + k];
+            checkLength(inputVector);
+            for (int i = 0; i < inputVector.length(); i++) {
+                switch (inputVector.charAt(i)) {
+                    case '0':   zeros[inputs[i]] |= 1L << k;    break;
+                    case '1':   ones[inputs[i]] |= 1L << k;     break;
+                    default:    break;
+                }
+            }
+        }
+        patterns = count;
+    }
+
+    public void runThreeValued() {
+
+        for (int g = 0; g < threeValuedFunctions.length; g++) {
+            evaluateThreeValued(g);
+        }
+    }
+
+    public String getThreeValuedOutputVector(int pattern) {
+
+        char[] vector = new char[outputs.length];
+        for (int i = 0; i < outputs.length; i++) {
+            if ((ones[outputs[i]] >>> pattern & 1) != 0) {
+                vector[i] = '1';
+            } else if ((zeros[outputs[i]] >>> pattern & 1) != 0) {
+                vector[i] = '0';
+            } else {
+                vector[i] = 'X';
+            }
+        }
+        return new String(vector);
+    }
+
+    public void setLanes(int lanes) {
+
+        this.lanes = lanes;
+        wide = lanes > 1 ? new long[nets.length * lanes] : null;
+        accumulator = new long[lanes];
+    }
+
+    public void initializeWide(String[] inputVectors, int offset, int count) {
+
+        if (count > Long.SIZE * lanes) {
+            throw new IllegalArgumentException("At most " + Long.SIZE * lanes + " input vectors can be simulated at once");
+        }
+        Arrays.fill(wide, 0L);
+        for (int k = 0; k < count; k++) {
+            String inputVector = inputVectors[offset + k];
+            checkLength(inputVector);
+            for (int i = 0; i < inputVector.length(); i++) {
+                long value = Character.getNumericValue(inputVector.charAt(i)) & 1;
+                wide[inputs[i] * lanes + (k >>> 6)] |= value << k;
+            }
+        }
+        patterns = count;
+    }
+
+    public void runWide() {
+
+        for (int g = 0; g < functions.length; g++) {
+            evaluateWide(g);
+        }
+    }
+
+    public int getNumberOfPatterns() {
+        return patterns;
+    }
+
+    public String getOutputVector(int pattern) {
+
+        char[] vector = new char[outputs.length];
+        for (int i = 0; i < outputs.length; i++) {
+            vector[i] = (words[outputs[i]] >>> pattern & 1) == 0 ? '0' : '1';
+        }
+        return new String(vector);
+    }
+
+    public void printOutputs() {
+
+        for (int i = 0; i < outputs.length; i++) {
+            System.out.print(nets[outputs[i]]);
+        }
+        System.out.println();
+    }
+
+    private void evaluateFunction(int g) {
         int value = 0;
-        int[] in = gate.getInputs();
-        switch (gate.getFunction()) {
-            case "INV":
-                value = nets[in[0]] == 0 ? 1 : 0;
+        int first = faninOffsets[g];
+        int last = faninOffsets[g + 1];
+        switch (functions[g]) {
+            case Netlist.INV:
+                value = nets[faninIndices[first]] == 0 ? 1 : 0;
                 break;
-            case "BUF":
-                value = nets[in[0]];
+            case Netlist.BUF:
+                value = nets[faninIndices[first]];
                 break;
-            case "AND":
+            case Netlist.AND:
                 value = 1;
-                for (int i : in) {
-                    value = value & nets[i];
+                for (int p = first; p < last; p++) {
+                    value = value & nets[faninIndices[p]];
                 }
                 break;
-            case "OR":
+            case Netlist.OR:
                 value = 0;
-                for (int i : in) {
-                    value = value | nets[i];
+                for (int p = first; p < last; p++) {
+                    value = value | nets[faninIndices[p]];
                 }
                 break;
-            case "NAND":
+            case Netlist.NAND:
                 value = 1;
-                for (int i : in) {
-                    value = value & nets[i];
+                for (int p = first; p < last; p++) {
+                    value = value & nets[faninIndices[p]];
                 }
                 value = value == 0 ? 1 : 0;
                 break;
-            case "NOR":
+            case Netlist.NOR:
                 value = 0;
-                for (int i : in) {
-                    value = value | nets[i];
+                for (int p = first; p < last; p++) {
+                    value = value | nets[faninIndices[p]];
                 }
                 value = value == 0 ? 1 : 0;
                 break;
-            case "XOR":
+            case Netlist.XOR:
                 value = 0;
-                for (int i : in) {
-                    value = value ^ nets[i];
+                for (int p = first; p < last; p++) {
+                    value = value ^ nets[faninIndices[p]];
                 }
                 break;
-            case "XNOR":
+            case Netlist.XNOR:
                 value = 0;
-                for (int i : in) {
-                    value = value ^ nets[i];
+                for (int p = first; p < last; p++) {
+                    value = value ^ nets[faninIndices[p]];
                 }
                 value = value == 0 ? 1 : 0;
                 break;
+            case Netlist.LUT:
+                value = 0;
+                for (int p = first; p < last; p++) {
+                    value = value | nets[faninIndices[p]] << (p - first);
+                }
+                value = (int) (tables[g] >>> value) & 1;
+                break;
+            default:
+                System.out.println("Error: Unsupported logic gate");
+                System.exit(0);
+                break;
+        }
+        nets[gateOutputs[g]] = value;
+    }
+
+    private void evaluateParallel(int g, long[] cofactors) {
+        long value = 0;
+        int first = faninOffsets[g];
+        int last = faninOffsets[g + 1];
+        switch (functions[g]) {
+            case Netlist.INV:
+                value = ~words[faninIndices[first]];
+                break;
+            case Netlist.BUF:
+                value = words[faninIndices[first]];
+                break;
+            case Netlist.AND:
+                value = -1L;
+                for (int p = first; p < last; p++) {
+                    value = value & words[faninIndices[p]];
+                }
+                break;
+            case Netlist.OR:
+                value = 0;
+                for (int p = first; p < last; p++) {
+                    value = value | words[faninIndices[p]];
+                }
+                break;
+            case Netlist.NAND:
+                value = -1L;
+                for (int p = first; p < last; p++) {
+                    value = value & words[faninIndices[p]];
+                }
+                value = ~value;
+                break;
+            case Netlist.NOR:
+                value = 0;
+                for (int p = first; p < last; p++) {
+                    value = value | words[faninIndices[p]];
+                }
+                value = ~value;
+                break;
+            case Netlist.XOR:
+                value = 0;
+                for (int p = first; p < last; p++) {
+                    value = value ^ words[faninIndices[p]];
+                }
+                break;
+            case Netlist.XNOR:
+                value = 0;
+                for (int p = first; p < last; p++) {
+                    value = value ^ words[faninIndices[p]];
+                }
+                value = ~value;
+                break;
+            case Netlist.LUT:
+                int size = 1 << (last - first);
+                for (int j = 0; j < size; j++) {
+                    cofactors[j] = -(tables[g] >>> j & 1);
+                }
+                for (int p = first; p < last; p++) {
+                    long select = words[faninIndices[p]];
+                    size >>= 1;
+                    for (int j = 0; j < size; j++) {
+                        long low = cofactors[2 * j];
+                        long high = cofactors[2 * j + 1];
+                        cofactors[j] = low == high ? low : (select & high) | (~select & low);
+                    }
+                }
+                value = cofactors[0];
+                break;
             default:
                 System.out.println("Error: Unsupported logic gate");
                 System.exit(0);
                 break;
         }
-        nets[gate.getOutput()] = value;
+        words[gateOutputs[g]] = value;
+    }
+
+    private void evaluateWide(int g) {
+        long[] acc = accumulator;
+        int width = lanes;
+        int first = faninOffsets[g];
+        int last = faninOffsets[g + 1];
+        int base = faninIndices[first] * width;
+        switch (functions[g]) {
+            case Netlist.INV:
+                for (int w = 0; w < width; w++) {
+                    acc[w] = ~wide[base + w];
+                }
+                break;
+            case Netlist.BUF:
+                for (int w = 0; w < width; w++) {
+                    acc[w] = wide[base + w];
+                }
+                break;
+            case Netlist.AND:
+            case Netlist.NAND:
+                for (int w = 0; w < width; w++) {
+                    acc[w] = wide[base + w];
+                }
+                for (int p = first + 1; p < last; p++) {
+                    int input = faninIndices[p] * width;
+                    for (int w = 0; w < width; w++) {
+                        acc[w] &= wide[input + w];
+                    }
+                }
+                break;
+            case Netlist.OR:
+            case Netlist.NOR:
+                for (int w = 0; w < width; w++) {
+                    acc[w] = wide[base + w];
+                }
+                for (int p = first + 1; p < last; p++) {
+                    int input = faninIndices[p] * width;
+                    for (int w = 0; w < width; w++) {
+                        acc[w] |= wide[input + w];
+                    }
+                }
+                break;
+            case Netlist.XOR:
+            case Netlist.XNOR:
+                for (int w = 0; w < width; w++) {
+                    acc[w] = wide[base + w];
+                }
+                for (int p = first + 1; p < last; p++) {
+                    int input = faninIndices[p] * width;
+                    for (int w = 0; w < width; w++) {
+                        acc[w] ^= wide[input + w];
+                    }
+                }
+                break;
+            case Netlist.LUT:
+                for (int w = 0; w < width; w++) {
+                    int size = 1 << (last - first);
+                    for (int j = 0; j < size; j++) {
+                        cofactors[j] = -(tables[g] >>> j & 1);
+                    }
+                    for (int p = first; p < last; p++) {
+                        long select = wide[faninIndices[p] * width + w];
+                        size >>= 1;
+                        for (int j = 0; j < size; j++) {
+                            long low = cofactors[2 * j];
+                            long high = cofactors[2 * j + 1];
+                            cofactors[j] = low == high ? low : (select & high) | (~select & low);
+                        }
+                    }
+                    acc[w] = cofactors[0];
+                }
+                break;
+            default:
+                System.out.println("Error: Unsupported logic gate");
+                System.exit(0);
+                break;
+        }
+        switch (functions[g]) {
+            case Netlist.NAND:
+            case Netlist.NOR:
+            case Netlist.XNOR:
+                for (int w = 0; w < width; w++) {
+                    acc[w] = ~acc[w];
+                }
+                break;
+            default:
+                break;
+        }
+        int output = gateOutputs[g] * width;
+        for (int w = 0; w < width; w++) {
+            wide[output + w] = acc[w];
+        }
+    }
+
+    private void evaluateThreeValued(int g) {
+        long one = 0;
+        long zero = 0;
+        int first = threeValuedFaninOffsets[g];
+        int last = threeValuedFaninOffsets[g + 1];
+        switch (threeValuedFunctions[g]) {
+            case Netlist.INV:
+            case Netlist.BUF:
+                one = ones[threeValuedFaninIndices[first]];
+                zero = zeros[threeValuedFaninIndices[first]];
+                break;
+            case Netlist.AND:
+            case Netlist.NAND:
+                one = -1L;
+                for (int p = first; p < last; p++) {
+                    one = one & ones[threeValuedFaninIndices[p]];
+                    zero = zero | zeros[threeValuedFaninIndices[p]];
+                }
+                break;
+            case Netlist.OR:
+            case Netlist.NOR:
+                zero = -1L;
+                for (int p = first; p < last; p++) {
+                    one = one | ones[threeValuedFaninIndices[p]];
+                    zero = zero & zeros[threeValuedFaninIndices[p]];
+                }
+                break;
+            case Netlist.XOR:
+            case Netlist.XNOR:
+                zero = -1L;
+                for (int p = first; p < last; p++) {
+                    long inputOne = ones[threeValuedFaninIndices[p]];
+                    long inputZero = zeros[threeValuedFaninIndices[p]];
+                    long nextOne = (one & inputZero) | (zero & inputOne);
+                    zero = (one & inputOne) | (zero & inputZero);
+                    one = nextOne;
+                }
+                break;
+            default:
+                System.out.println("Error: Unsupported logic gate");
+                System.exit(0);
+                break;
+        }
+        switch (threeValuedFunctions[g]) {
+            case Netlist.INV:
+            case Netlist.NAND:
+            case Netlist.NOR:
+            case Netlist.XNOR:
+                ones[threeValuedGateOutputs[g]] = zero;
+                zeros[threeValuedGateOutputs[g]] = one;
+                break;
+            default:
+                ones[threeValuedGateOutputs[g]] = one;
+                zeros[threeValuedGateOutputs[g]] = zero;
+                break;
+        }
     }
-}
\ No newline at end of file
+}
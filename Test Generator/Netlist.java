@@ -0,0 +1,866 @@
+import java.util.Arrays;
+import java.util.Set;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+
+public class Netlist {
+
+    public static final int INV = 0;
+    public static final int BUF = 1;
+    public static final int AND = 2;
+    public static final int OR = 3;
+    public static final int NAND = 4;
+    public static final int NOR = 5;
+    public static final int XOR = 6;
+    public static final int XNOR = 7;
+    public static final int LUT = 8;
+
+    public static final String[] FUNCTIONS = { "INV", "BUF", "AND", "OR", "NAND", "NOR", "XOR", "XNOR" };
+    public static final int MAX_LUT_INPUTS = 6;
+
+    private static final long[] VARIABLES = {
+        0xaaaaaaaaaaaaaaaaL, 0xccccccccccccccccL, 0xf0f0f0f0f0f0f0f0L,
+        0xff00ff00ff00ff00L, 0xffff0000ffff0000L, 0xffffffff00000000L
+    };
+
+    private static final int UNSUPPORTED = -1;
+    private static final int INPUT = -2;
+    private static final int OUTPUT = -3;
+    private static final long WINDOW = 1L << 30;
+    private static final int MAGIC = 0x4e45544c;
+    private static final int VERSION = 1;
+    private static final int HEADER = 9;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private String hash;
+    private int numberOfNets;
+    private int[] functions;
+    private int[] faninOffsets;
+    private int[] faninIndices;
+    private int[] gateOutputs;
+    private int[] levels;
+    private int[] levelOffsets;
+    private int[] fanoutOffsets;
+    private int[] fanoutIndices;
+    private int[] drivers;
+    private int[] inputs;
+    private int[] outputs;
+    private long[] tables;
+
+    private Netlist() {
+    }
+
+    public static Netlist load(File netListFile) throws Exception {
+
+        try (FileChannel channel = FileChannel.open(netListFile.toPath(), StandardOpenOption.READ)) {
+            String hash = hash(channel);
+            Path cacheFile = getCacheFile(hash);
+            Netlist netlist = cacheFile == null ? null : readCache(cacheFile);
+            if (netlist == null) {
+                netlist = parse(channel);
+                if (cacheFile != null) {
+                    writeCache(netlist, cacheFile);
+                }
+            }
+            netlist.hash = hash;
+            return netlist;
+        }
+    }
+
+    private static Netlist parse(FileChannel channel) throws Exception {
+
+        Parser parser = new Parser();
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            long length = Math.min(WINDOW, size - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            int consumed = parser.parse(buffer, position + length == size);
+            if (consumed == 0) {
+                throw new Exception("Error: Net list line too long");
+            }
+            position += consumed;
+        }
+
+        Netlist netlist = new Netlist();
+        netlist.numberOfNets = parser.numberOfNets;
+        netlist.inputs = parser.inputs == null ? new int[0] : parser.inputs;
+        netlist.outputs = parser.outputs == null ? new int[0] : parser.outputs;
+        netlist.levelize(parser.functions.toArray(), parser.faninOffsets.toArray(),
+                         parser.faninIndices.toArray(), parser.gateOutputs.toArray(), null);
+        return netlist;
+    }
+
+    private static String hash(FileChannel channel) throws Exception {
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        long size = channel.size();
+        for (long position = 0; position < size; position += WINDOW) {
+            digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position)));
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static Path getCacheFile(String hash) {
+
+        Path directory = openCache("netlist.cache", "netlist-cache");
+        return directory == null ? null : directory.resolve(hash + ".net");
+    }
+
+    static Path openCache(String property, String name) {
+
+        try {
+            String location = System.getProperty(property,
+                Paths.get(System.getProperty("java.io.tmpdir"), name + "-" + System.getProperty("user.name")).toString());
+            if (location.isEmpty()) {
+                return null;
+            }
+            Path directory = Paths.get(location);
+            if (!Files.exists(directory, LinkOption.NOFOLLOW_LINKS)) {
+                if (isPosix(directory.toAbsolutePath().getParent())) {
+                    Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+                } else {
+                    Files.createDirectories(directory);
+                }
+            }
+            return Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS) && isPrivate(directory) ? directory : null;
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    static boolean isPrivate(Path path) throws Exception {
+
+        UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService()
+            .lookupPrincipalByName(System.getProperty("user.name"));
+        if (Files.isSymbolicLink(path) || !Files.getOwner(path, LinkOption.NOFOLLOW_LINKS).equals(user)) {
+            return false;
+        }
+        return !isPosix(path) || OWNER_ONLY.containsAll(Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS));
+    }
+
+    private static boolean isPosix(Path path) throws Exception {
+        return Files.getFileStore(path).supportsFileAttributeView(PosixFileAttributeView.class);
+    }
+
+    private static Netlist readCache(Path cacheFile) {
+
+        try {
+            if (!Files.exists(cacheFile, LinkOption.NOFOLLOW_LINKS) || !isPrivate(cacheFile)) {
+                return null;
+            }
+        } catch (Exception ex) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            IntBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+            if (buffer.remaining() < HEADER || buffer.get() != MAGIC || buffer.get() != VERSION) {
+                return null;
+            }
+            Netlist netlist = new Netlist();
+            netlist.numberOfNets = buffer.get();
+            int numberOfGates = buffer.get();
+            int numberOfPins = buffer.get();
+            int depth = buffer.get();
+            int numberOfInputs = buffer.get();
+            int numberOfOutputs = buffer.get();
+            int length = buffer.get();
+            if (netlist.numberOfNets < 0 || numberOfGates < 0 || numberOfPins < 0 || depth < 0
+                    || numberOfInputs < 0 || numberOfOutputs < 0 || length != buffer.remaining()
+                    || 4L * numberOfGates + 2L * numberOfPins + 2L * netlist.numberOfNets + depth + 3
+                       + numberOfInputs + numberOfOutputs != length) {
+                return null;
+            }
+            netlist.functions = read(buffer, numberOfGates);
+            netlist.gateOutputs = read(buffer, numberOfGates);
+            netlist.levels = read(buffer, numberOfGates);
+            netlist.faninOffsets = read(buffer, numberOfGates + 1);
+            netlist.faninIndices = read(buffer, numberOfPins);
+            netlist.levelOffsets = read(buffer, depth + 1);
+            netlist.fanoutOffsets = read(buffer, netlist.numberOfNets + 1);
+            netlist.fanoutIndices = read(buffer, numberOfPins);
+            netlist.drivers = read(buffer, netlist.numberOfNets);
+            netlist.inputs = read(buffer, numberOfInputs);
+            netlist.outputs = read(buffer, numberOfOutputs);
+            return netlist.isConsistent() ? netlist : null;
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    private boolean isConsistent() {
+
+        int numberOfGates = functions.length;
+        int depth = levelOffsets.length - 1;
+        if (!isOffsets(faninOffsets, faninIndices.length) || !isOffsets(levelOffsets, numberOfGates)
+                || !isOffsets(fanoutOffsets, fanoutIndices.length)
+                || !isIndices(faninIndices, numberOfNets) || !isIndices(gateOutputs, numberOfNets)
+                || !isIndices(inputs, numberOfNets) || !isIndices(outputs, numberOfNets)) {
+            return false;
+        }
+
+        int[] driver = new int[numberOfNets];
+        Arrays.fill(driver, -1);
+        for (int l = 0; l < depth; l++) {
+            for (int g = levelOffsets[l]; g < levelOffsets[l + 1]; g++) {
+                if (functions[g] < INV || functions[g] > XNOR || levels[g] != l || driver[gateOutputs[g]] != -1) {
+                    return false;
+                }
+                for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+                    int d = driver[faninIndices[p]];
+                    if (d != -1 && levels[d] >= l) {
+                        return false;
+                    }
+                }
+                driver[gateOutputs[g]] = g;
+            }
+        }
+        for (int g = 0; g < numberOfGates; g++) {
+            for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+                if (driver[faninIndices[p]] >= g) {
+                    return false;
+                }
+            }
+        }
+        if (!Arrays.equals(driver, drivers)) {
+            return false;
+        }
+
+        int[] fill = Arrays.copyOf(fanoutOffsets, numberOfNets);
+        for (int g = 0; g < numberOfGates; g++) {
+            for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+                int net = faninIndices[p];
+                if (fill[net] >= fanoutOffsets[net + 1] || fanoutIndices[fill[net]++] != g) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isOffsets(int[] offsets, int total) {
+
+        if (offsets[0] != 0 || offsets[offsets.length - 1] != total) {
+            return false;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i] < offsets[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIndices(int[] indices, int bound) {
+
+        for (int index : indices) {
+            if (index < 0 || index >= bound) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] read(IntBuffer buffer, int length) {
+
+        int[] values = new int[length];
+        buffer.get(values);
+        return values;
+    }
+
+    private static void writeCache(Netlist netlist, Path cacheFile) {
+
+        int[][] sections = {
+            netlist.functions, netlist.gateOutputs, netlist.levels, netlist.faninOffsets, netlist.faninIndices,
+            netlist.levelOffsets, netlist.fanoutOffsets, netlist.fanoutIndices, netlist.drivers,
+            netlist.inputs, netlist.outputs
+        };
+        long length = 0;
+        for (int[] section : sections) {
+            length += section.length;
+        }
+        if ((HEADER + length) * Integer.BYTES > Integer.MAX_VALUE) {
+            return;
+        }
+
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                write(channel, buffer, new int[] {
+                    MAGIC, VERSION, netlist.numberOfNets, netlist.functions.length, netlist.faninIndices.length,
+                    netlist.getNumberOfLevels(), netlist.inputs.length, netlist.outputs.length, (int) length
+                });
+                for (int[] section : sections) {
+                    write(channel, buffer, section);
+                }
+                flush(channel, buffer);
+            }
+            Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception ex) {
+            try {
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, int[] values) throws Exception {
+
+        int offset = 0;
+        while (offset < values.length) {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush(channel, buffer);
+            }
+            int count = Math.min(values.length - offset, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            offset += count;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws Exception {
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public int getNumberOfNets() {
+        return numberOfNets;
+    }
+
+    public int getNumberOfGates() {
+        return functions.length;
+    }
+
+    public int getNumberOfLevels() {
+        return levelOffsets.length - 1;
+    }
+
+    public int[] getFunctions() {
+        return functions;
+    }
+
+    public int[] getFaninOffsets() {
+        return faninOffsets;
+    }
+
+    public int[] getFaninIndices() {
+        return faninIndices;
+    }
+
+    public int[] getGateOutputs() {
+        return gateOutputs;
+    }
+
+    public int[] getLevels() {
+        return levels;
+    }
+
+    public int[] getLevelOffsets() {
+        return levelOffsets;
+    }
+
+    public int[] getFanoutOffsets() {
+        return fanoutOffsets;
+    }
+
+    public int[] getFanoutIndices() {
+        return fanoutIndices;
+    }
+
+    public int[] getDrivers() {
+        return drivers;
+    }
+
+    public int[] getInputs() {
+        return inputs;
+    }
+
+    public int[] getOutputs() {
+        return outputs;
+    }
+
+    public long[] getTables() {
+        return tables;
+    }
+
+    public int[] getFanin(int gate) {
+        return Arrays.copyOfRange(faninIndices, faninOffsets[gate], faninOffsets[gate + 1]);
+    }
+
+    public Netlist collapse(int k) throws Exception {
+
+        if (k < 1 || k > MAX_LUT_INPUTS) {
+            throw new IllegalArgumentException("LUT size must be between 1 and " + MAX_LUT_INPUTS);
+        }
+
+        int numberOfGates = functions.length;
+        boolean[] absorbable = new boolean[numberOfNets];
+        for (int g = 0; g < numberOfGates; g++) {
+            int net = gateOutputs[g];
+            absorbable[net] = functions[g] != LUT && fanoutOffsets[net + 1] - fanoutOffsets[net] == 1;
+        }
+        for (int net : outputs) {
+            absorbable[net] = false;
+        }
+
+        boolean[] needed = new boolean[numberOfGates];
+        for (int g = 0; g < numberOfGates; g++) {
+            needed[g] = !absorbable[gateOutputs[g]];
+        }
+
+        IntList function = new IntList();
+        IntList faninOffset = new IntList();
+        IntList faninIndex = new IntList();
+        IntList gateOutput = new IntList();
+        IntList leaves = new IntList();
+        IntList cone = new IntList();
+        long[] table = new long[numberOfGates];
+        long[] values = new long[numberOfNets];
+        faninOffset.add(0);
+
+        for (int g = numberOfGates - 1; g >= 0; g--) {
+            if (!needed[g]) {
+                continue;
+            }
+
+            leaves.clear();
+            cone.clear();
+            cone.add(g);
+            for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+                if (!leaves.contains(faninIndices[p])) {
+                    leaves.add(faninIndices[p]);
+                }
+            }
+            int j = 0;
+            while (j < leaves.size()) {
+                int net = leaves.get(j);
+                int d = drivers[net];
+                if (d != -1 && absorbable[net] && leaves.size() - 1 + countNew(d, leaves) <= k) {
+                    leaves.remove(j);
+                    for (int p = faninOffsets[d]; p < faninOffsets[d + 1]; p++) {
+                        if (!leaves.contains(faninIndices[p])) {
+                            leaves.add(faninIndices[p]);
+                        }
+                    }
+                    cone.add(d);
+                    j = 0;
+                } else {
+                    j++;
+                }
+            }
+
+            for (int i = 0; i < leaves.size(); i++) {
+                int d = drivers[leaves.get(i)];
+                if (d != -1) {
+                    needed[d] = true;
+                }
+            }
+
+            int index = function.size();
+            if (cone.size() == 1 || leaves.size() > k) {
+                function.add(functions[g]);
+                for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+                    faninIndex.add(faninIndices[p]);
+                }
+            } else {
+                for (int i = 0; i < leaves.size(); i++) {
+                    values[leaves.get(i)] = VARIABLES[i];
+                }
+                int[] gates = cone.toArray();
+                Arrays.sort(gates);
+                for (int c : gates) {
+                    values[gateOutputs[c]] = evaluate(c, values);
+                }
+                long mask = leaves.size() == MAX_LUT_INPUTS ? -1L : (1L << (1 << leaves.size())) - 1;
+                function.add(LUT);
+                table[index] = values[gateOutputs[g]] & mask;
+                for (int i = 0; i < leaves.size(); i++) {
+                    faninIndex.add(leaves.get(i));
+                }
+            }
+            faninOffset.add(faninIndex.size());
+            gateOutput.add(gateOutputs[g]);
+        }
+
+        Netlist netlist = new Netlist();
+        netlist.numberOfNets = numberOfNets;
+        netlist.inputs = inputs;
+        netlist.outputs = outputs;
+        netlist.hash = hash == null ? null : hash + "-" + k;
+        netlist.levelize(function.toArray(), faninOffset.toArray(), faninIndex.toArray(), gateOutput.toArray(),
+                         Arrays.copyOf(table, function.size()));
+        return netlist;
+    }
+
+    private int countNew(int gate, IntList leaves) {
+
+        int count = 0;
+        for (int p = faninOffsets[gate]; p < faninOffsets[gate + 1]; p++) {
+            boolean seen = leaves.contains(faninIndices[p]);
+            for (int q = faninOffsets[gate]; q < p && !seen; q++) {
+                seen = faninIndices[q] == faninIndices[p];
+            }
+            if (!seen) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long evaluate(int gate, long[] values) {
+
+        int first = faninOffsets[gate];
+        int last = faninOffsets[gate + 1];
+        long value = 0;
+        switch (functions[gate]) {
+            case INV:
+                return ~values[faninIndices[first]];
+            case BUF:
+                return values[faninIndices[first]];
+            case AND:
+            case NAND:
+                value = -1L;
+                for (int p = first; p < last; p++) {
+                    value &= values[faninIndices[p]];
+                }
+                return functions[gate] == AND ? value : ~value;
+            case OR:
+            case NOR:
+                for (int p = first; p < last; p++) {
+                    value |= values[faninIndices[p]];
+                }
+                return functions[gate] == OR ? value : ~value;
+            case XOR:
+            case XNOR:
+                for (int p = first; p < last; p++) {
+                    value ^= values[faninIndices[p]];
+                }
+                return functions[gate] == XOR ? value : ~value;
+            default:
+                throw new IllegalStateException("Unexpected gate in fanout-free region");
+        }
+    }
+
+    private void levelize(int[] function, int[] faninOffset, int[] faninIndex, int[] gateOutput,
+                          long[] table) throws Exception {
+
+        int numberOfGates = function.length;
+        int[] driver = new int[numberOfNets];
+        Arrays.fill(driver, -1);
+        for (int g = 0; g < numberOfGates; g++) {
+            driver[gateOutput[g]] = g;
+        }
+
+        int[] successorOffsets = new int[numberOfGates + 1];
+        int[] pending = new int[numberOfGates];
+        for (int g = 0; g < numberOfGates; g++) {
+            for (int p = faninOffset[g]; p < faninOffset[g + 1]; p++) {
+                int d = driver[faninIndex[p]];
+                if (d != -1) {
+                    successorOffsets[d + 1]++;
+                    pending[g]++;
+                }
+            }
+        }
+        for (int g = 0; g < numberOfGates; g++) {
+            successorOffsets[g + 1] += successorOffsets[g];
+        }
+        int[] successors = new int[successorOffsets[numberOfGates]];
+        int[] fill = Arrays.copyOf(successorOffsets, numberOfGates);
+        for (int g = 0; g < numberOfGates; g++) {
+            for (int p = faninOffset[g]; p < faninOffset[g + 1]; p++) {
+                int d = driver[faninIndex[p]];
+                if (d != -1) {
+                    successors[fill[d]++] = g;
+                }
+            }
+        }
+
+        int[] queue = new int[numberOfGates];
+        int[] level = new int[numberOfGates];
+        int head = 0;
+        int tail = 0;
+        int depth = 0;
+        for (int g = 0; g < numberOfGates; g++) {
+            if (pending[g] == 0) {
+                queue[tail++] = g;
+            }
+        }
+        while (head < tail) {
+            int g = queue[head++];
+            depth = Math.max(depth, level[g] + 1);
+            for (int p = successorOffsets[g]; p < successorOffsets[g + 1]; p++) {
+                int next = successors[p];
+                level[next] = Math.max(level[next], level[g] + 1);
+                if (--pending[next] == 0) {
+                    queue[tail++] = next;
+                }
+            }
+        }
+        if (tail != numberOfGates) {
+            throw new Exception("Error: Combinational loop in net list");
+        }
+
+        levelOffsets = new int[depth + 1];
+        for (int g = 0; g < numberOfGates; g++) {
+            levelOffsets[level[g] + 1]++;
+        }
+        for (int l = 0; l < depth; l++) {
+            levelOffsets[l + 1] += levelOffsets[l];
+        }
+        int[] order = new int[numberOfGates];
+        fill = Arrays.copyOf(levelOffsets, depth);
+        for (int g = 0; g < numberOfGates; g++) {
+            order[fill[level[g]]++] = g;
+        }
+
+        functions = new int[numberOfGates];
+        tables = table == null ? null : new long[numberOfGates];
+        gateOutputs = new int[numberOfGates];
+        levels = new int[numberOfGates];
+        faninOffsets = new int[numberOfGates + 1];
+        faninIndices = new int[faninIndex.length];
+        drivers = new int[numberOfNets];
+        Arrays.fill(drivers, -1);
+        fanoutOffsets = new int[numberOfNets + 1];
+        for (int g = 0; g < numberOfGates; g++) {
+            int source = order[g];
+            functions[g] = function[source];
+            if (table != null) {
+                tables[g] = table[source];
+            }
+            gateOutputs[g] = gateOutput[source];
+            levels[g] = level[source];
+            drivers[gateOutputs[g]] = g;
+            int length = faninOffset[source + 1] - faninOffset[source];
+            System.arraycopy(faninIndex, faninOffset[source], faninIndices, faninOffsets[g], length);
+            faninOffsets[g + 1] = faninOffsets[g] + length;
+            for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+                fanoutOffsets[faninIndices[p] + 1]++;
+            }
+        }
+
+        for (int i = 0; i < numberOfNets; i++) {
+            fanoutOffsets[i + 1] += fanoutOffsets[i];
+        }
+        fanoutIndices = new int[faninIndices.length];
+        fill = Arrays.copyOf(fanoutOffsets, numberOfNets);
+        for (int g = 0; g < numberOfGates; g++) {
+            for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+                fanoutIndices[fill[faninIndices[p]]++] = g;
+            }
+        }
+    }
+
+    private static class Parser {
+
+        private IntList functions = new IntList();
+        private IntList faninOffsets = new IntList();
+        private IntList faninIndices = new IntList();
+        private IntList gateOutputs = new IntList();
+        private IntList line = new IntList();
+        private byte[] word = new byte[8];
+        private int[] inputs;
+        private int[] outputs;
+        private int numberOfNets;
+
+        private Parser() {
+            faninOffsets.add(0);
+        }
+
+        private int parse(MappedByteBuffer buffer, boolean last) throws Exception {
+
+            int limit = buffer.limit();
+            int start = 0;
+            int end = 0;
+            while (true) {
+                while (end < limit && buffer.get(end) != '\n') {
+                    end++;
+                }
+                if (end == limit && !last) {
+                    return start;
+                }
+                parseLine(buffer, start, end);
+                if (end == limit) {
+                    return limit;
+                }
+                start = ++end;
+            }
+        }
+
+        private void parseLine(MappedByteBuffer buffer, int position, int end) throws Exception {
+
+            int length = 0;
+            while (position < end && !isSpace(buffer.get(position))) {
+                if (length < word.length) {
+                    word[length] = buffer.get(position);
+                }
+                length++;
+                position++;
+            }
+
+            line.clear();
+            while (position < end) {
+                byte b = buffer.get(position);
+                if (isSpace(b)) {
+                    position++;
+                    continue;
+                }
+                boolean negative = b == '-';
+                if (negative) {
+                    position++;
+                }
+                int value = 0;
+                int digits = 0;
+                while (position < end && buffer.get(position) >= '0' && buffer.get(position) <= '9') {
+                    value = value * 10 + (buffer.get(position) - '0');
+                    digits++;
+                    position++;
+                }
+                if (digits == 0 || (position < end && !isSpace(buffer.get(position)))) {
+                    throw new Exception("Error: Unexpected input format");
+                }
+                line.add(negative ? -value : value);
+            }
+
+            if (length == 0 || line.size() < 2) {
+                return;
+            }
+
+            int count = line.size() - 1;
+            int[] nets = new int[count];
+            for (int i = 0; i < count; i++) {
+                nets[i] = line.get(i) - 1;
+                numberOfNets = Math.max(numberOfNets, nets[i] + 1);
+            }
+
+            int function = lookup(length);
+            switch (function) {
+                case INPUT:
+                    inputs = nets;
+                    break;
+                case OUTPUT:
+                    outputs = nets;
+                    break;
+                case UNSUPPORTED:
+                    throw new Exception("Error: Unsupported logic gate");
+                default:
+                    int output = line.get(count) - 1;
+                    numberOfNets = Math.max(numberOfNets, output + 1);
+                    functions.add(function);
+                    for (int net : nets) {
+                        faninIndices.add(net);
+                    }
+                    faninOffsets.add(faninIndices.size());
+                    gateOutputs.add(output);
+                    break;
+            }
+        }
+
+        private int lookup(int length) {
+
+            if (matches("INPUT", length)) {
+                return INPUT;
+            }
+            if (matches("OUTPUT", length)) {
+                return OUTPUT;
+            }
+            for (int f = 0; f < FUNCTIONS.length; f++) {
+                if (matches(FUNCTIONS[f], length)) {
+                    return f;
+                }
+            }
+            return UNSUPPORTED;
+        }
+
+        private boolean matches(String name, int length) {
+
+            if (name.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (word[i] != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t' || b == '\r' || b == '\f';
+        }
+    }
+
+    private static class IntList {
+
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int get(int index) {
+            return values[index];
+        }
+
+        private boolean contains(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void remove(int index) {
+            values[index] = values[--size];
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private void clear() {
+            size = 0;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -1,12 +1,9 @@
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Collections;
 import java.util.Arrays;
 import java.util.stream.IntStream;
 import java.io.File;
-import java.io.FileReader;
-import java.io.BufferedReader;
 
 public class TestGenerator {
 
@@ -47,19 +44,19 @@ public class TestGenerator {
         DBAR
     }
 
-    private class Gate {
-        private String function;
-        private int[] inputs;
-        private int output;
-    }
-
     private class NetValuePair {
         private int net;
         private Logic value;
     }
 
-    private List<Gate> gates = new LinkedList<>();
-    private List<Gate> dFrontier = new LinkedList<>();
+    private int[] functions;
+    private int[] faninOffsets;
+    private int[] faninIndices;
+    private int[] gateOutputs;
+    private int[] fanoutOffsets;
+    private int[] fanoutIndices;
+    private int[] drivers;
+    private List<Integer> dFrontier = new LinkedList<>();
     private Logic[] nets;
     private int[] inputs;
     private int[] outputs;
@@ -149,11 +146,9 @@ public class TestGenerator {
             if (isOutput) {
                 return true;
             } else {
-                for (Gate gate : gates) {
-                    if (IntStream.of(gate.inputs).anyMatch(x -> x == net)) {
-                        if (xPathCheck(gate.output)) {
-                            return true;
-                        }
+                for (int p = fanoutOffsets[net]; p < fanoutOffsets[net + 1]; p++) {
+                    if (xPathCheck(gateOutputs[fanoutIndices[p]])) {
+                        return true;
                     }
                 }
             }
@@ -169,16 +164,21 @@ public class TestGenerator {
             objective.value = stuckAtValue == Logic.ZERO ? Logic.ONE : Logic.ZERO;
             return objective;
         }
-        Gate gate = dFrontier.get(0);
-        int net = IntStream.of(gate.inputs).filter(x -> nets[x] == Logic.X).findFirst().getAsInt();
+        int gate = dFrontier.get(0);
+        int net = -1;
+        for (int p = faninOffsets[gate]; p < faninOffsets[gate + 1] && net == -1; p++) {
+            if (nets[faninIndices[p]] == Logic.X) {
+                net = faninIndices[p];
+            }
+        }
         Logic value = null;
-        switch (gate.function) {
-            case "AND":
-            case "NAND":
+        switch (functions[gate]) {
+            case Netlist.AND:
+            case Netlist.NAND:
                 value = Logic.ONE;
                 break;
-            case "OR":
-            case "NOR":
+            case Netlist.OR:
+            case Netlist.NOR:
                 value = Logic.ZERO;
                 break;
             default:
@@ -197,10 +197,11 @@ public class TestGenerator {
             assignment.value = objective.value;
             return assignment;
         }
-        Gate gate = gates.stream().filter(x -> x.output == objective.net).findFirst().get();
+        int gate = drivers[objective.net];
         boolean value = objective.value == Logic.ONE || objective.value == Logic.D;
-        boolean parity = gate.function.equals("INV") || gate.function.equals("NAND") || gate.function.equals("NOR");
-        for (int input : gate.inputs) {
+        boolean parity = functions[gate] == Netlist.INV || functions[gate] == Netlist.NAND || functions[gate] == Netlist.NOR;
+        for (int p = faninOffsets[gate]; p < faninOffsets[gate + 1]; p++) {
+            int input = faninIndices[p];
             if (nets[input] == Logic.X) {
                 NetValuePair next = new NetValuePair();
                 next.net = input;
@@ -220,27 +221,17 @@ public class TestGenerator {
         } else {
             nets[assignment.net] = assignment.value;
         }
-        List<Gate> list = new LinkedList<>(gates);
-        while (!list.isEmpty()) {
-            ListIterator<Gate> iterator = list.listIterator();
-            int length = list.size();
-            while (iterator.hasNext()) {
-                Gate gate = iterator.next();
-                if (isGateReady(gate)) {
-                    evaluateGate(gate);
-                    iterator.remove();
-                }
-            }
-            if (length == list.size()) {
-                break;
+        for (int g = 0; g < functions.length; g++) {
+            if (isGateReady(g)) {
+                evaluateGate(g);
             }
         }
         dFrontier.clear();
-        for (Gate gate : gates) {
-            if (nets[gate.output] == Logic.X) {
-                for (int input : gate.inputs) {
-                    if (nets[input] == Logic.D || nets[input] == Logic.DBAR) {
-                        dFrontier.add(gate);
+        for (int g = 0; g < functions.length; g++) {
+            if (nets[gateOutputs[g]] == Logic.X) {
+                for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+                    if (nets[faninIndices[p]] == Logic.D || nets[faninIndices[p]] == Logic.DBAR) {
+                        dFrontier.add(g);
                         break;
                     }
                 }
@@ -255,9 +246,9 @@ public class TestGenerator {
             if (isInput) {
                 return true;
             } else {
-                Gate gate = gates.stream().filter(x -> x.output == net).findFirst().get();
-                for (int input : gate.inputs) {
-                    if (pathToInput(input)) {
+                int gate = drivers[net];
+                for (int p = faninOffsets[gate]; p < faninOffsets[gate + 1]; p++) {
+                    if (pathToInput(faninIndices[p])) {
                         return true;
                     }
                 }
@@ -267,13 +258,14 @@ public class TestGenerator {
     }
 
     private boolean circuitConsistent() {
-        for (Gate gate : gates) {
+        for (int g = 0; g < functions.length; g++) {
             Logic value = Logic.X;
-            int[] in = gate.inputs;
-            if (isGateReady(gate)) {
-                switch (gate.function) {
-                    case "INV":
-                        switch (nets[in[0]]) {
+            int first = faninOffsets[g];
+            int last = faninOffsets[g + 1];
+            if (isGateReady(g)) {
+                switch (functions[g]) {
+                    case Netlist.INV:
+                        switch (nets[faninIndices[first]]) {
                             case ZERO:  value = Logic.ONE;    break;
                             case ONE:   value = Logic.ZERO;   break;
                             case D:     value = Logic.DBAR;   break;
@@ -281,12 +273,13 @@ public class TestGenerator {
                             default:    break;
                         }
                         break;
-                    case "BUF":
-                        value = nets[in[0]];
+                    case Netlist.BUF:
+                        value = nets[faninIndices[first]];
                         break;
-                    case "AND":
+                    case Netlist.AND:
                         value = Logic.ONE;
-                        for (int i : in) {
+                        for (int p = first; p < last; p++) {
+                            int i = faninIndices[p];
                             if (nets[i] == Logic.D) {
                                 value = Logic.D;
                             } else if (nets[i] == Logic.DBAR) {
@@ -297,9 +290,10 @@ public class TestGenerator {
                             }
                         }
                         break;
-                    case "OR":
+                    case Netlist.OR:
                         value = Logic.ZERO;
-                        for (int i : in) {
+                        for (int p = first; p < last; p++) {
+                            int i = faninIndices[p];
                             if (nets[i] == Logic.D) {
                                 value = Logic.D;
                             } else if (nets[i] == Logic.DBAR) {
@@ -310,9 +304,10 @@ public class TestGenerator {
                             }
                         }
                         break;
-                    case "NAND":
+                    case Netlist.NAND:
                         value = Logic.ZERO;
-                        for (int i : in) {
+                        for (int p = first; p < last; p++) {
+                            int i = faninIndices[p];
                             if (nets[i] == Logic.D) {
                                 value = Logic.DBAR;
                             } else if (nets[i] == Logic.DBAR) {
@@ -323,9 +318,10 @@ public class TestGenerator {
                             }
                         }
                         break;
-                    case "NOR":
+                    case Netlist.NOR:
                         value = Logic.ONE;
-                        for (int i : in) {
+                        for (int p = first; p < last; p++) {
+                            int i = faninIndices[p];
                             if (nets[i] == Logic.D) {
                                 value = Logic.DBAR;
                             } else if (nets[i] == Logic.DBAR) {
@@ -341,7 +337,7 @@ public class TestGenerator {
                         System.exit(0);
                         break;
                 }
-                if (gate.output == faultLine) {
+                if (gateOutputs[g] == faultLine) {
                     if (value == Logic.ZERO && stuckAtValue == Logic.ONE) {
                         value = Logic.DBAR;
                     } else if (value == Logic.ONE && stuckAtValue == Logic.ZERO) {
@@ -349,7 +345,7 @@ public class TestGenerator {
                     }
                 }
             }
-            if (value != nets[gate.output]) {
+            if (value != nets[gateOutputs[g]]) {
                 return false;
             }
         }
@@ -363,122 +359,52 @@ public class TestGenerator {
 
     private void parseNetListFile(File netListFile) throws Exception {
 
-        BufferedReader reader = new BufferedReader(new FileReader(netListFile));
-        String line = reader.readLine();
-        int numberOfNets = 0;
-
-        while (line != null) {
-            int net = parseLine(line);
-            if (net > numberOfNets) {
-                numberOfNets = net;
-            }
-            line = reader.readLine();
-        }
-
-        nets = new Logic[numberOfNets];
-    }
-
-    private int parseLine(String line) {
-
-        int net = 0;
-        String[] tokens = line.split("\\s+");
-        if (tokens.length > 2) {
-            String function = parseFunction(tokens);
-            int[] in = parseInputs(tokens);
-            int out = parseOutput(tokens);
-            initializeGate(tokens, function, in, out);
-            net = getNumberOfNets(in, out);
-        }
-        return net;
-    }
-
-    private String parseFunction(String[] tokens) {
-
-        return tokens[0];
-    }
-
-    private int[] parseInputs(String[] tokens) {
-
-        int[] in = new int[tokens.length - 2];
-        for (int i = 1; i < tokens.length - 1; i++) {
-            int net = Integer.parseInt(tokens[i]);
-            in[i - 1] = net - 1;
-        }
-        return in;
-    }
-
-    private int parseOutput(String[] tokens) {
-
-        return Integer.parseInt(tokens[tokens.length - 1]) - 1;
-    }
-
-    private void initializeGate(String[] tokens, String function, int[] in, int out) {
-
-        switch (function) {
-            case "INPUT":
-                inputs = new int[tokens.length - 2];
-                for (int i = 1; i < tokens.length - 1; i++) {
-                    inputs[i - 1] = Integer.parseInt(tokens[i]) - 1;
-                }
-                break;
-            case "OUTPUT":
-                outputs = new int[tokens.length - 2];
-                for (int i = 1; i < tokens.length - 1; i++) {
-                    outputs[i - 1] = Integer.parseInt(tokens[i]) - 1;
-                }
-                break;
-            default:
-                Gate gate = new Gate();
-                gate.function = function;
-                gate.inputs = in;
-                gate.output = out;
-                gates.add(gate);
-                break;
-        }
-    }
-
-    private int getNumberOfNets(int[] in, int out) {
-
-        int numberOfNets = out;
-        for (int i : in) {
-            if (i > numberOfNets) {
-                numberOfNets = i;
-            }
-        }
-        return numberOfNets + 1;
+        Netlist netlist = Netlist.load(netListFile);
+        functions = netlist.getFunctions();
+        faninOffsets = netlist.getFaninOffsets();
+        faninIndices = netlist.getFaninIndices();
+        gateOutputs = netlist.getGateOutputs();
+        fanoutOffsets = netlist.getFanoutOffsets();
+        fanoutIndices = netlist.getFanoutIndices();
+        drivers = netlist.getDrivers();
+        inputs = netlist.getInputs();
+        outputs = netlist.getOutputs();
+        nets = new Logic[netlist.getNumberOfNets()];
     }
 
-    private boolean isGateReady(Gate gate) {
+    private boolean isGateReady(int g) {
         boolean anyUnknown = false;
         Logic control = null;
-        switch (gate.function) {
-            case "AND":
-            case "NAND":
+        switch (functions[g]) {
+            case Netlist.AND:
+            case Netlist.NAND:
                 control = Logic.ZERO;
                 break;
-            case "OR":
-            case "NOR":
+            case Netlist.OR:
+            case Netlist.NOR:
                 control = Logic.ONE;
                 break;
             default:
                 break;
         }
-        for (int input : gate.inputs) {
-            if (nets[input] == control) {
+        for (int p = faninOffsets[g]; p < faninOffsets[g + 1]; p++) {
+            Logic input = nets[faninIndices[p]];
+            if (input == control) {
                 return true;
-            } else if (nets[input] == Logic.X) {
+            } else if (input == Logic.X) {
                 anyUnknown = true;
             }
         }
         return !anyUnknown;
     }
 
-    private void evaluateGate(Gate gate) {
+    private void evaluateGate(int g) {
         Logic value = null;
-        int[] in = gate.inputs;
-        switch (gate.function) {
-            case "INV":
-                switch (nets[in[0]]) {
+        int first = faninOffsets[g];
+        int last = faninOffsets[g + 1];
+        switch (functions[g]) {
+            case Netlist.INV:
+                switch (nets[faninIndices[first]]) {
                     case ZERO:  value = Logic.ONE;    break;
                     case ONE:   value = Logic.ZERO;   break;
                     case D:     value = Logic.DBAR;   break;
@@ -486,12 +412,13 @@ public class TestGenerator {
                     default:    break;
                 }
                 break;
-            case "BUF":
-                value = nets[in[0]];
+            case Netlist.BUF:
+                value = nets[faninIndices[first]];
                 break;
-            case "AND":
+            case Netlist.AND:
                 value = Logic.ONE;
-                for (int i : in) {
+                for (int p = first; p < last; p++) {
+                    int i = faninIndices[p];
                     if (nets[i] == Logic.D) {
                         value = Logic.D;
                     } else if (nets[i] == Logic.DBAR) {
@@ -502,9 +429,10 @@ public class TestGenerator {
                     }
                 }
                 break;
-            case "OR":
+            case Netlist.OR:
                 value = Logic.ZERO;
-                for (int i : in) {
+                for (int p = first; p < last; p++) {
+                    int i = faninIndices[p];
                     if (nets[i] == Logic.D) {
                         value = Logic.D;
                     } else if (nets[i] == Logic.DBAR) {
@@ -515,9 +443,10 @@ public class TestGenerator {
                     }
                 }
                 break;
-            case "NAND":
+            case Netlist.NAND:
                 value = Logic.ZERO;
-                for (int i : in) {
+                for (int p = first; p < last; p++) {
+                    int i = faninIndices[p];
                     if (nets[i] == Logic.D) {
                         value = Logic.DBAR;
                     } else if (nets[i] == Logic.DBAR) {
@@ -528,9 +457,10 @@ public class TestGenerator {
                     }
                 }
                 break;
-            case "NOR":
+            case Netlist.NOR:
                 value = Logic.ONE;
-                for (int i : in) {
+                for (int p = first; p < last; p++) {
+                    int i = faninIndices[p];
                     if (nets[i] == Logic.D) {
                         value = Logic.DBAR;
                     } else if (nets[i] == Logic.DBAR) {
@@ -546,13 +476,13 @@ public class TestGenerator {
                 System.exit(0);
                 break;
         }
-        if (gate.output == faultLine) {
+        if (gateOutputs[g] == faultLine) {
             if (value == Logic.ZERO && stuckAtValue == Logic.ONE) {
                 value = Logic.DBAR;
             } else if (value == Logic.ONE && stuckAtValue == Logic.ZERO) {
                 value = Logic.D;
             }
         }
-        nets[gate.output] = value;
+        nets[gateOutputs[g]] = value;
     }
 }
\ No newline at end of file